@@ -0,0 +1,93 @@
+package crono;
+
+import java.util.Arrays;
+
+import crono.type.CronoType;
+
+/**
+ * The save stack of shallow binding, used for dynamic scope.
+ * Under dynamic scope a call does not build an environment that shadows
+ * its caller's; it writes its arguments into the global cells of their
+ * symbols, so every lookup reads the current value directly, and saves the
+ * values it replaced here to be restored when the call is left.
+ * Applications that are not in tail position open an extent. A cell is
+ * saved at most once per extent, so that a loop of tail calls rebinding the
+ * same arguments does not grow the stack; the extent restores it once the
+ * loop is done.
+ */
+public class Bindings {
+    private Cell[] cells;
+    private CronoType[] values; /*< The value each cell had when saved */
+    private int[] saved; /*< The previous save of each cell */
+    private int size;
+    private int floor; /*< Where the innermost open extent starts */
+    
+    public Bindings() {
+        this.cells = new Cell[64];
+        this.values = new CronoType[64];
+        this.saved = new int[64];
+    }
+    
+    /**
+     * @return The number of saved values, to pass to unwind.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Saves the value of a cell that is about to be rebound.
+     */
+    public void save(Cell cell) {
+        if(cell.saved >= floor) {
+            return; /*< Already restored by the current extent */
+        }
+        if(size == cells.length) {
+            int length = size * 2;
+            cells = Arrays.copyOf(cells, length);
+            values = Arrays.copyOf(values, length);
+            saved = Arrays.copyOf(saved, length);
+        }
+        cells[size] = cell;
+        values[size] = cell.value;
+        saved[size] = cell.saved;
+        cell.saved = size++;
+    }
+    
+    /**
+     * Restores every cell saved since the stack had the given size.
+     * @param mark A size returned by size.
+     */
+    public void unwind(int mark) {
+        while(size > mark) {
+            Cell cell = cells[--size];
+            cell.value = values[size];
+            cell.saved = saved[size];
+            cells[size] = null;
+            values[size] = null;
+        }
+    }
+    
+    /**
+     * Opens an extent.
+     * @return The extent that was open before, to pass to close.
+     */
+    public int open() {
+        int outer = floor;
+        floor = size;
+        return outer;
+    }
+    /**
+     * Closes the innermost extent.
+     * @param outer The value open returned.
+     * @param unwind If the bindings made in the extent should be restored;
+     *               bindings left by calls that returned normally have
+     *               already been.
+     */
+    public void close(int outer, boolean unwind) {
+        if(unwind) {
+            unwind(floor);
+        }
+        floor = outer;
+    }
+}
@@ -0,0 +1,29 @@
+package crono;
+
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * The binding of a top-level symbol.
+ * There is one cell per global symbol, shared by every environment derived
+ * from the same top level. References to a global may hold its cell
+ * directly; a redefinition updates the cell in place, so every holder sees
+ * the new value. Under dynamic scope, calls rebind cells in place as well,
+ * see Bindings. Writes made while a snapshot is open are saved in the
+ * Journal, so that try can undo them.
+ */
+public class Cell {
+    public final Symbol sym;
+    public CronoType value; /*< null while the symbol is undefined */
+    int saved = -1; /*< Where value was last saved in the Bindings */
+    int journaled = -1; /*< Where value was last saved in the Journal */
+    
+    public Cell(Symbol sym, CronoType value) {
+        this.sym = sym;
+        this.value = value;
+    }
+    
+    public String toString() {
+        return String.format("<cell %s>", sym);
+    }
+}
@@ -9,23 +9,29 @@ import java.net.URL;
 import java.util.LinkedList;
 import java.util.List;
 
+import crono.compiler.CompilingInterpreter;
 import crono.type.CronoType;
+import crono.vm.VirtualMachine;
 
 public class Crono {
     public static final Option[] options = {
+        new Option('b', "bytecode"),
+        new Option('c', "compile"),
         new Option('d', "dynamic"),
         new Option('D', "debug"),
         new Option('e', "show-environment"),
         new Option('h', "help"),
+        new Option('O', "optimize"),
         new Option('p', "print-ast"),
         new Option('P', "no-prelude"),
         new Option('q', "quiet"),
         new Option('s', "static"),
+        new Option('S', "stack-traces"),
         new Option('t', "show-types"),
         new Option('T', "trace")
     };
     public static final String helpstr =
-        "usage Crono [-dDhs]";
+        "usage Crono [-bcdDhOsS]";
     public static final String introstr =
         "Crono++ by Mark Watts, Carlo Vidal, Troy Varney (c) 2012\n";
     public static final String prompt = "> ";
@@ -33,6 +39,9 @@ public class Crono {
     public static boolean showTypes = false;
     public static boolean interactive = false;
     public static boolean loadPrelude = true;
+    public static boolean compile = false;
+    public static boolean bytecode = false;
+    public static boolean optimize = false;
     public static Visitor v = null;
     public static List<String> files = new LinkedList<String>();
     
@@ -55,6 +64,12 @@ public class Crono {
         int opt = optparse.getopt(options);
         while(opt != -1) {
             switch(opt) {
+            case 'b':
+                bytecode = true;
+                break;
+            case 'c':
+                compile = true;
+                break;
             case 'd':
                 interp.dynamic(true);
                 break;
@@ -67,6 +82,9 @@ public class Crono {
             case 'h':
                 System.err.println(helpstr);
                 return false;
+            case 'O':
+                optimize = true;
+                break;
             case 'p':
                 interp.printAST(true);
                 break;
@@ -82,6 +100,9 @@ public class Crono {
             case 's':
                 interp.dynamic(false);
                 break;
+            case 'S':
+                InterpreterException.stackTraces(true);
+                break;
             case 't':
                 showTypes = true;
                 interp.getEnv().show_types = true;
@@ -107,10 +128,15 @@ public class Crono {
     
     public static void main(String[] args) {
         Interpreter interp = new Interpreter();
-        v = interp;
         interactive = (System.console() != null); /*< Java 6 feature */
         
         parseOptions(interp, args);
+        if(bytecode) {
+            interp = new VirtualMachine(interp);
+        }else if(compile) {
+            interp = new CompilingInterpreter(interp);
+        }
+        v = interp;
         
         try {
             File package_dir = new File("./packages/");
@@ -143,8 +169,10 @@ public class Crono {
         Parser parser = new Parser(new InputStreamReader(System.in));
         CronoType statement = getStatement(parser);
         while(statement != null) {
+            Visitor.VisitorState state = v.getState();
             try{
                 statement = statement.accept(v);
+                v.releaseState(state);
                 if(showTypes) {
                     System.out.printf("Result: %s [%s]\n",statement.repr(),
                                       statement.typeId());
@@ -153,12 +181,14 @@ public class Crono {
                 }
             }catch(InterpreterException re) {
                 String message = re.getMessage();
+                v.setState(state); /*< A failed statement has no effect */
                 if(message != null) {
                     System.err.println(message);
                 }else {
                     System.err.println("Unknown Interpreter Error!");
                 }
             }catch(RuntimeException re) {
+                v.setState(state);
                 re.printStackTrace();
             }
             statement = getStatement(parser);
@@ -177,7 +207,7 @@ public class Crono {
             return;
         }
         try {
-            CronoType[] prog = parser.program();
+            CronoType[] prog = Optimizer.optimize(v, parser.program());
             for(int i = 0; i < prog.length; ++i) {
                 prog[i].accept(v);
             }
@@ -2,10 +2,21 @@ package crono;
 
 import crono.type.CronoType;
 
+/**
+ * The exception thrown by raise, carrying the raised value to try.
+ * Unlike other messages, this one refers to the raised value itself rather
+ * than a copy of its text, so raising a large value costs nothing extra.
+ * The message is only read once the exception has escaped every try, and
+ * no Crono code runs between the raise and that point to change the value.
+ */
 public class CronoException extends InterpreterException {
     public final CronoType thrown;
     public CronoException(CronoType thrown) {
-        super("CronoException: %s", thrown);
+        super("CronoException");
         this.thrown = thrown;
     }
-}
\ No newline at end of file
+    
+    public String getMessage() {
+        return "CronoException: " + thrown;
+    }
+}
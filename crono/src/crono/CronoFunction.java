@@ -20,13 +20,18 @@ import crono.type.Function.EvalType;
  * EvalType eval() (defaults to EvalType.FULL)
  * The length of TypeId[] args() must be at least as large as int arity(), but
  * may be larger if the function is variadic (used for structs).
+ * Builtins that are called often also override the fixed-arity run1 or run2,
+ * with run delegating to them, so they can be applied without an array.
  */
 public enum CronoFunction {
     CONS(new Function(new TypeId[]{CronoType.TYPEID, CronoType.TYPEID},
                       Cons.TYPEID, 2)
     {
         public CronoType run(Visitor v, CronoType[] args) {
-            return new Cons(args[0], args[1]);
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
+            return new Cons(first, second);
         }
         public String toString() {
             return "cons";
@@ -37,10 +42,13 @@ public enum CronoFunction {
         private static final String _not_cons = "%s is not a cons cell";
         
         public CronoType run(Visitor v, CronoType[] args) {
-            if(!(args[0] instanceof Cons)) {
-                throw new InterpreterException(_not_cons, args[0]);
+            return run1(v, args[0]);
+        }
+        public CronoType run1(Visitor v, CronoType arg) {
+            if(!(arg instanceof Cons)) {
+                throw new InterpreterException(_not_cons, arg);
             }
-            return ((Cons)args[0]).car();
+            return ((Cons)arg).car();
         }
         public String toString() {
             return "car";
@@ -51,10 +59,13 @@ public enum CronoFunction {
         private static final String _not_cons = "%s is not a cons cell";
         
         public CronoType run(Visitor v, CronoType[] args) {
-            if(!(args[0] instanceof Cons)) {
-                throw new InterpreterException(_not_cons, args[0]);
+            return run1(v, args[0]);
+        }
+        public CronoType run1(Visitor v, CronoType arg) {
+            if(!(arg instanceof Cons)) {
+                throw new InterpreterException(_not_cons, arg);
             }
-            return ((Cons)args[0]).cdr();
+            return ((Cons)arg).cdr();
         }
         public String toString() {
             return "cdr";
@@ -192,10 +203,12 @@ public enum CronoFunction {
             }
             body = new CronoType[blist.size()];
             body = blist.toArray(body);
-            LambdaFunction lfun =  new LambdaFunction(list.toArray(arglist),
-                                                      body, v.getEnv());
+            LambdaFunction lfun = LambdaFunction.capture(
+                list.toArray(arglist), body, v.getEnv());
             v.getEnv().put((Symbol)args[0], lfun);
-            lfun.environment.put((Symbol)args[0], lfun);
+            if(!v.getEnv().isGlobal()) {
+                lfun.environment.put((Symbol)args[0], lfun);
+            }
             return lfun;
         }
         public String toString() {
@@ -262,8 +275,8 @@ public enum CronoFunction {
             }
             body = new CronoType[blist.size()];
             body = blist.toArray(body);
-            return new LambdaFunction(list.toArray(arglist), body,
-                                      v.getEnv());
+            return LambdaFunction.capture(list.toArray(arglist), body,
+                                          v.getEnv());
         }
         public String toString() {
             return "\\";
@@ -292,14 +305,23 @@ public enum CronoFunction {
             return builder.toString();
         }
         
+        /**
+         * Binds the names in a new frame and runs the body in it, as the
+         * application of a lambda would, without building the lambda.
+         */
         public CronoType run(Visitor v, CronoType[] args) {
             if(!(args[0] instanceof Cons)) {
                 throw new InterpreterException(_subst_list_type,
                                                args[0].typeId());
             }
             
-            List<Symbol> symlist = new LinkedList<Symbol>();
-            List<CronoType> arglist = new LinkedList<CronoType>();
+            int size = 0;
+            for(CronoType ct : ((Cons)args[0])) {
+                ++size;
+            }
+            Symbol[] syms = new Symbol[size];
+            CronoType[] values = new CronoType[size];
+            int i = 0;
             for(CronoType ct : ((Cons)args[0])) {
                 if(!(ct instanceof Cons)) {
                     throw new InterpreterException(_subst_not_cons,
@@ -319,29 +341,26 @@ public enum CronoFunction {
                     }
                     cdr = ((Cons)cdr).car();
                 }
-                cdr = cdr.accept(v);
-                symlist.add((Symbol)car);
-                arglist.add(cdr);
+                syms[i] = (Symbol)car;
+                values[i++] = cdr.accept(v);
             }
             
-            Symbol[] lsyms = new Symbol[symlist.size()];
-            lsyms = symlist.toArray(lsyms);
-            
-            List<CronoType> bodylist = new LinkedList<CronoType>();
-            for(int i = 1; i < args.length; ++i) {
-                bodylist.add(args[i]);
+            if(v.debugging()) {
+                CronoType[] body = new CronoType[args.length - 1];
+                System.arraycopy(args, 1, body, 0, body.length);
+                v.dprint("Converting let to lambda application: (%s %s)\n",
+                         new LambdaFunction(syms, body, v.getEnv()),
+                         argString(values));
             }
-            CronoType[] body = new CronoType[bodylist.size()];
-            body = bodylist.toArray(body);
-            
-            CronoType[] largs = new CronoType[arglist.size()];
-            largs = arglist.toArray(largs);
-            
-            LambdaFunction lambda = new LambdaFunction(lsyms,body,v.getEnv());
-            v.dprint("Converting let to lambda application: (%s %s)\n",
-                     lambda, argString(largs));
             
-            return lambda.run(v, largs);
+            v.pushEnv(v.getEnv().frame(syms, values));
+            int last = args.length - 1;
+            for(i = 1; i < last; ++i) {
+                args[i].accept(v);
+            }
+            CronoType ret = v.tail(args[last]); /*< May be a TailCall */
+            v.popEnv();
+            return ret;
         }
         public String toString() {
             return "let";
@@ -371,14 +390,37 @@ public enum CronoFunction {
             return builder.toString();
         }
         
+        /* If a binding's value is written as a lambda */
+        private boolean lambda(CronoType value, Environment env) {
+            if(!(value instanceof Cons)) {
+                return false;
+            }
+            CronoType head = ((Cons)value).car();
+            return (head instanceof Symbol &&
+                    env.get((Symbol)head) == LAMBDA.function);
+        }
+        
+        /**
+         * Binds the names one by one in a new frame, evaluating each value
+         * in that frame. Lambdas written as values share the frame itself,
+         * rather than a snapshot of it, so they see the bindings made after
+         * them: they may refer to themselves and to each other.
+         */
         public CronoType run(Visitor v, CronoType[] args) {
             if(!(args[0] instanceof Cons)) {
                 throw new InterpreterException(_subst_list_type,
                                                args[0].typeId());
             }
             
-            List<Symbol> symlist = new LinkedList<Symbol>();
-            List<CronoType> arglist = new LinkedList<CronoType>();
+            int size = 0;
+            for(CronoType ct : ((Cons)args[0])) {
+                ++size;
+            }
+            Symbol[] syms = new Symbol[size];
+            CronoType[] values = new CronoType[size];
+            Environment env = v.getEnv().frame(syms, new CronoType[0]);
+            v.pushEnv(env);
+            int i = 0;
             for(CronoType ct : ((Cons)args[0])) {
                 if(!(ct instanceof Cons)) {
                     throw new InterpreterException(_subst_not_cons,
@@ -399,33 +441,30 @@ public enum CronoFunction {
                     }
                     cdr = ((Cons)cdr).car();
                 }
-                cdr = cdr.accept(v);
-                symlist.add((Symbol)car);
-                arglist.add(cdr);
-                
-                if(cdr instanceof LambdaFunction) {
-                    LambdaFunction lfun = ((LambdaFunction)cdr);
-                    lfun.environment.put((Symbol)car, cdr);
+                CronoType value = cdr.accept(v);
+                if(value instanceof LambdaFunction && lambda(cdr, env)) {
+                    value = ((LambdaFunction)value).within(env);
                 }
+                syms[i] = (Symbol)car;
+                values[i++] = value;
+                env.put((Symbol)car, value);
             }
             
-            Symbol[] lsyms = new Symbol[symlist.size()];
-            lsyms = symlist.toArray(lsyms);
-            
-            List<CronoType> bodylist = new LinkedList<CronoType>();
-            for(int i = 1; i < args.length; ++i) {
-                bodylist.add(args[i]);
+            if(v.debugging()) {
+                CronoType[] body = new CronoType[args.length - 1];
+                System.arraycopy(args, 1, body, 0, body.length);
+                v.dprint("Converting letrec to lambda application: " +
+                         "(%s %s)\n", new LambdaFunction(syms, body, env),
+                         argString(values));
             }
-            CronoType[] body = new CronoType[bodylist.size()];
-            body = bodylist.toArray(body);
             
-            CronoType[] largs = new CronoType[arglist.size()];
-            largs = arglist.toArray(largs);
-            
-            LambdaFunction lambda = new LambdaFunction(lsyms,body,v.getEnv());
-            v.dprint("Converting letrec to lambda application: (%s %s)\n",
-                     lambda, argString(largs));
-            return lambda.run(v, largs); /*< -. - */
+            int last = args.length - 1;
+            for(i = 1; i < last; ++i) {
+                args[i].accept(v);
+            }
+            CronoType ret = v.tail(args[last]); /*< May be a TailCall */
+            v.popEnv();
+            return ret;
         }
         public String toString() {
             return "letrec";
@@ -452,9 +491,9 @@ public enum CronoFunction {
         public CronoType run(Visitor v, CronoType[] args) {
             CronoType check = args[0].accept(v);
             if(check != Nil.NIL) {
-                return args[1].accept(v);
+                return v.tail(args[1]);
             }
-            return args[2].accept(v);
+            return v.tail(args[2]);
         }
         public String toString() {
             return "if";
@@ -464,7 +503,10 @@ public enum CronoFunction {
                     Cons.TYPEID, 2)
     {
         public CronoType run(Visitor v, CronoType[] args) {
-            return (args[0].equals(args[1])) ?
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
+            return (first.equals(second)) ?
                 TruthValue.T : Nil.NIL;
         }
         public String toString() {
@@ -477,30 +519,22 @@ public enum CronoFunction {
         private static final String _bad_type =
             "<: expected :primitive :primitive, got %s %s";
         
-        private Number resolve(CronoType type) {
-            if(type instanceof CronoInteger) {
-                return ((Long)((CronoInteger)type).value);
-            }else if(type instanceof CronoFloat) {
-                return  ((Double)((CronoFloat)type).value);
-            }else if(type instanceof CronoCharacter) {
-                return ((Long)((long)((CronoCharacter)type).ch));
-            }
-            return null;
-        }
         public CronoType run(Visitor v, CronoType[] args) {
-            if(!(args[0] instanceof CronoPrimitive &&
-                 args[1] instanceof CronoPrimitive)) {
-                throw new InterpreterException(_bad_type, args[0].typeId(),
-                                               args[1].typeId());
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
+            if(!(first instanceof CronoPrimitive &&
+                 second instanceof CronoPrimitive)) {
+                throw new InterpreterException(_bad_type, first.typeId(),
+                                               second.typeId());
             }
             
-            Number lhs = resolve(args[0]);
-            Number rhs = resolve(args[1]);
-            if(lhs instanceof Double || rhs instanceof Double) {
-                return (lhs.doubleValue() < rhs.doubleValue()) ?
+            if(first instanceof CronoFloat ||
+               second instanceof CronoFloat) {
+                return (toDouble(first) < toDouble(second)) ?
                     TruthValue.T : Nil.NIL;
             }
-            return (lhs.longValue() < rhs.longValue()) ?
+            return (toLong(first) < toLong(second)) ?
                 TruthValue.T : Nil.NIL;
         }
         public String toString() {
@@ -513,30 +547,22 @@ public enum CronoFunction {
         private static final String _bad_type =
             ">: expected :primitive :primitive, got %s %s";
         
-        private Number resolve(CronoType type) {
-            if(type instanceof CronoInteger) {
-                return ((Long)((CronoInteger)type).value);
-            }else if(type instanceof CronoFloat) {
-                return  ((Double)((CronoFloat)type).value);
-            }else if(type instanceof CronoCharacter) {
-                return ((Long)((long)((CronoCharacter)type).ch));
-            }
-            return null;
-        }
         public CronoType run(Visitor v, CronoType[] args) {
-            if(!(args[0] instanceof CronoPrimitive &&
-                 args[1] instanceof CronoPrimitive)) {
-                throw new InterpreterException(_bad_type, args[0].typeId(),
-                                               args[1].typeId());
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
+            if(!(first instanceof CronoPrimitive &&
+                 second instanceof CronoPrimitive)) {
+                throw new InterpreterException(_bad_type, first.typeId(),
+                                               second.typeId());
             }
             
-            Number lhs = resolve(args[0]);
-            Number rhs = resolve(args[1]);
-            if(lhs instanceof Double || rhs instanceof Double) {
-                return (lhs.doubleValue() > rhs.doubleValue()) ?
+            if(first instanceof CronoFloat ||
+               second instanceof CronoFloat) {
+                return (toDouble(first) > toDouble(second)) ?
                     TruthValue.T : Nil.NIL;
             }
-            return (lhs.longValue() > rhs.longValue()) ?
+            return (toLong(first) > toLong(second)) ?
                 TruthValue.T : Nil.NIL;
         }
         public String toString() {
@@ -550,15 +576,18 @@ public enum CronoFunction {
             "+: expected types :number :number, got %s %s";
         
         public CronoType run(Visitor v, CronoType[] args) {
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
             CronoNumber lhs = null, rhs = null;
-            if(!(args[0] instanceof CronoNumber &&
-                 args[1] instanceof CronoNumber)) {
-                throw new InterpreterException(_bad_type, args[0].typeId(),
-                                               args[0].typeId());
+            if(!(first instanceof CronoNumber &&
+                 second instanceof CronoNumber)) {
+                throw new InterpreterException(_bad_type, first.typeId(),
+                                               first.typeId());
             }
             
-            lhs = (CronoNumber)(args[0]);
-            rhs = (CronoNumber)(args[1]);
+            lhs = (CronoNumber)(first);
+            rhs = (CronoNumber)(second);
             
             if(lhs instanceof CronoFloat) {
                 double val1, val2;
@@ -594,15 +623,18 @@ public enum CronoFunction {
             "-: expected types :number :number, got %s %s";
         
         public CronoType run(Visitor v, CronoType[] args) {
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
             CronoNumber lhs = null, rhs = null;
-            if(!(args[0] instanceof CronoNumber &&
-                 args[1] instanceof CronoNumber)) {
-                throw new InterpreterException(_bad_type, args[0].typeId(),
-                                               args[1].typeId());
+            if(!(first instanceof CronoNumber &&
+                 second instanceof CronoNumber)) {
+                throw new InterpreterException(_bad_type, first.typeId(),
+                                               second.typeId());
             }
             
-            lhs = (CronoNumber)(args[0]);
-            rhs = (CronoNumber)(args[1]);
+            lhs = (CronoNumber)(first);
+            rhs = (CronoNumber)(second);
             
             if(lhs instanceof CronoFloat) {
                 double val1, val2;
@@ -638,15 +670,18 @@ public enum CronoFunction {
             "*: expected types :number :number, got %s %s";
         
         public CronoType run(Visitor v, CronoType[] args) {
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
             CronoNumber lhs = null, rhs = null;
-            if(!(args[0] instanceof CronoNumber &&
-                 args[1] instanceof CronoNumber)) {
-                throw new InterpreterException(_bad_type, args[0].typeId(),
-                                               args[1].typeId());
+            if(!(first instanceof CronoNumber &&
+                 second instanceof CronoNumber)) {
+                throw new InterpreterException(_bad_type, first.typeId(),
+                                               second.typeId());
             }
             
-            lhs = (CronoNumber)(args[0]);
-            rhs = (CronoNumber)(args[1]);
+            lhs = (CronoNumber)(first);
+            rhs = (CronoNumber)(second);
             
             if(lhs instanceof CronoFloat) {
                 double val1, val2;
@@ -682,15 +717,18 @@ public enum CronoFunction {
             "/: expected types :number :number, got %s %s";
         
         public CronoType run(Visitor v, CronoType[] args) {
+            return run2(v, args[0], args[1]);
+        }
+        public CronoType run2(Visitor v, CronoType first, CronoType second) {
             CronoNumber lhs = null, rhs = null;
-            if(!(args[0] instanceof CronoNumber &&
-                 args[1] instanceof CronoNumber)) {
-                throw new InterpreterException(_bad_type, args[0].typeId(),
-                                               args[1].typeId());
+            if(!(first instanceof CronoNumber &&
+                 second instanceof CronoNumber)) {
+                throw new InterpreterException(_bad_type, first.typeId(),
+                                               second.typeId());
             }
             
-            lhs = (CronoNumber)(args[0]);
-            rhs = (CronoNumber)(args[1]);
+            lhs = (CronoNumber)(first);
+            rhs = (CronoNumber)(second);
             
             if(lhs instanceof CronoFloat) {
                 double val1, val2;
@@ -799,7 +837,7 @@ public enum CronoFunction {
             Parser p = new Parser(is);
             CronoType[] program = null;
             try {
-                program = p.program();
+                program = Optimizer.optimize(v, p.program());
             }catch(ParseException pe) {
                 throw new InterpreterException(_bad_parse, pe.getMessage());
             }
@@ -814,7 +852,7 @@ public enum CronoFunction {
             Function[] funcs = pack.functions();
             if(funcs != null) {
                 for(Function f : funcs) {
-                    env.put(new Symbol(f.toString()), f);
+                    env.put(Symbol.intern(f.toString()), f);
                 }
             }
             TypeId[] types = pack.types();
@@ -948,7 +986,7 @@ public enum CronoFunction {
             Parser p = new Parser(reader);
             
             try {
-                CronoType[] program = p.program();
+                CronoType[] program = Optimizer.optimize(v, p.program());
                 CronoType result = Nil.NIL;
                 for(int i = 0; i < program.length; ++i) {
                     result = program[i].accept(v);
@@ -977,10 +1015,13 @@ public enum CronoFunction {
                 v.getEnv().put((Symbol)args[0], ce.thrown);
                 result = args[2].accept(v);
             }catch(Exception ex) {
-                v.setState(state);
+                /* Read the message before the environments are restored */
                 CronoString thrown = CronoString.fromString(ex.getMessage());
+                v.setState(state);
                 v.getEnv().put((Symbol)args[0], thrown);
                 result = args[2].accept(v);
+            }finally {
+                v.releaseState(state); /*< No-op once restored */
             }
             return result;
         }
@@ -1017,4 +1058,18 @@ public enum CronoFunction {
     private CronoFunction(Function fun) {
         this.function = fun;
     }
+    
+    /* Operands of the comparisons, read without boxing */
+    private static double toDouble(CronoType type) {
+        if(type instanceof CronoFloat) {
+            return ((CronoFloat)type).value;
+        }
+        return (double)toLong(type);
+    }
+    private static long toLong(CronoType type) {
+        if(type instanceof CronoCharacter) {
+            return (long)((CronoCharacter)type).ch;
+        }
+        return ((CronoInteger)type).value;
+    }
 }
@@ -23,7 +23,7 @@ public abstract class CronoPackage {
             this.type = type;
         }
         public SymbolPair(String sym, CronoType type) {
-            this(new Symbol(sym), type);
+            this(Symbol.intern(sym), type);
         }
     }
     
@@ -5,92 +5,324 @@ import crono.type.CronoType;
 import crono.type.CronoTypeId;
 import crono.type.Function;
 import crono.type.LambdaFunction;
+import crono.type.PartialApplication;
 import crono.type.Symbol;
 import crono.type.TypeId;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public class Environment {
     public boolean show_builtins, multiline, show_types;
     
-    private Map<String, CronoType> symbols;
-    private Map<String, CronoStruct> structs;
-    private Map<String, CronoTypeId> types;
+    /* Persistent maps; copying an environment shares them, and each put
+     * replaces this environment's map without touching the copy's */
+    private PersistentHashMap<Symbol, CronoType> symbols; /*< local only */
+    private PersistentHashMap<Symbol, CronoStruct> structs;
+    private PersistentHashMap<String, CronoTypeId> types;
+    /* Top-level definitions live in cells shared with every environment
+     * derived from the same top level; local environments shadow them. */
+    private final Globals globals;
+    private final boolean global; /*< whether puts define globals */
+    /* For a call frame under shallow binding, the size of the Bindings when
+     * it was made; puts rebind cells and are undone by leave. Otherwise -1 */
+    private final int mark;
+    /* Under shallow binding, the arguments of the call this environment
+     * belongs to, which closures made in it keep; null at the top level */
+    private Symbol[] arguments;
     private String repr;
+    private int reprVersion; /*< globals.version when repr was built */
     private boolean dirty;
+    int journaled = -1; /*< Where this was last saved in the Journal */
+    final long born; /*< The Journal's clock when this was made */
+    
+    /* The builtins and base types are shared by every environment; a new
+     * environment starts from these tries, and user definitions shadow them
+     * by path copying without ever modifying the shared root. */
+    private static final PersistentHashMap<Symbol, CronoType> BUILTINS;
+    private static final PersistentHashMap<String, CronoTypeId> BASE_TYPES;
+    static {
+        TypeId[] base = {
+            crono.type.CronoType.TYPEID,
+            crono.type.Atom.TYPEID,
+            crono.type.Cons.TYPEID,
+            crono.type.CronoPrimitive.TYPEID,
+            crono.type.CronoArray.TYPEID,
+            crono.type.CronoCharacter.TYPEID,
+            crono.type.CronoFloat.TYPEID,
+            crono.type.CronoInteger.TYPEID,
+            crono.type.CronoNumber.TYPEID,
+            crono.type.CronoString.TYPEID,
+            crono.type.CronoStruct.TYPEID,
+            crono.type.CronoVector.TYPEID,
+            crono.type.Function.TYPEID,
+            crono.type.Nil.TYPEID,
+            crono.type.Symbol.TYPEID,
+            crono.type.CronoTypeId.TYPEID,
+        };
+        PersistentHashMap<String, CronoTypeId> types =
+            PersistentHashMap.empty();
+        for(TypeId type : base) {
+            types = types.put(type.image, new CronoTypeId(type));
+        }
+        BASE_TYPES = types;
+        
+        PersistentHashMap<Symbol, CronoType> symbols =
+            PersistentHashMap.empty();
+        for(CronoFunction cf : CronoFunction.values()) {
+            symbols = symbols.put(Symbol.intern(cf.function.toString()),
+                                  cf.function);
+        }
+        BUILTINS = symbols;
+    }
     
     public Environment() {
         this(true);
     }
     
     public Environment(boolean builtins) {
-        symbols = new HashMap<String, CronoType>();
-        structs = new HashMap<String, CronoStruct>();
-        types = new HashMap<String, CronoTypeId>();
+        symbols = PersistentHashMap.empty();
+        globals = new Globals(builtins);
+        global = true;
+        mark = -1;
+        born = 0;
+        structs = PersistentHashMap.empty();
+        types = BASE_TYPES;
         show_builtins = false;
         multiline = false;
         show_types = false;
         dirty = true; /*< dirty flag to rebuild string repr */
-        
-        this.put(crono.type.CronoType.TYPEID);
-        this.put(crono.type.Atom.TYPEID);
-        this.put(crono.type.Cons.TYPEID);       
-        this.put(crono.type.CronoPrimitive.TYPEID);
-        this.put(crono.type.CronoArray.TYPEID);
-        this.put(crono.type.CronoCharacter.TYPEID);
-        this.put(crono.type.CronoFloat.TYPEID);
-        this.put(crono.type.CronoInteger.TYPEID);
-        this.put(crono.type.CronoNumber.TYPEID);
-        this.put(crono.type.CronoString.TYPEID);
-        this.put(crono.type.CronoStruct.TYPEID);
-        this.put(crono.type.CronoVector.TYPEID);
-        this.put(crono.type.Function.TYPEID);
-        this.put(crono.type.Nil.TYPEID);
-        this.put(crono.type.Symbol.TYPEID);
-        this.put(crono.type.CronoTypeId.TYPEID);
-        
-        if(builtins) {
-            for(CronoFunction cf : CronoFunction.values()) {
-                put(new Symbol(cf.function.toString()), cf.function);
-            }
-        }
     }
     
     public Environment(Environment env) {
-        symbols = new HashMap<String, CronoType>(env.symbols);
-        structs = new HashMap<String, CronoStruct>(env.structs);
-        types = new HashMap<String, CronoTypeId>(env.types);
+        this(env, env.global, env.mark);
+    }
+    private Environment(Environment env, boolean global, int mark) {
+        symbols = env.symbols;
+        globals = env.globals;
+        this.global = global;
+        this.mark = mark;
+        arguments = env.arguments;
+        born = (globals.journal == null) ? 0 : globals.journal.clock();
+        structs = env.structs;
+        types = env.types;
         show_builtins = env.show_builtins;
         multiline = env.multiline;
         show_types = env.show_types;
+        repr = env.repr;
+        reprVersion = env.reprVersion;
         dirty = env.dirty;
     }
     
+    /**
+     * Creates an environment for bindings nested inside this one, such as
+     * the arguments of a function call. Definitions made in the new
+     * environment are local to it; globals are still shared.
+     * @return A local copy of this environment.
+     */
+    public Environment local() {
+        return new Environment(this, false, -1);
+    }
+    /**
+     * Creates a local environment that keeps only some of the local
+     * bindings of this one; globals are still shared.
+     * @param syms The symbols whose local bindings are kept.
+     * @return The restricted environment.
+     */
+    public Environment restrict(Collection<Symbol> syms) {
+        Environment env = new Environment(this, false, -1);
+        env.symbols = PersistentHashMap.empty();
+        for(Symbol sym : syms) {
+            CronoType value = symbols.get(sym);
+            if(value != null) {
+                env.symbols = env.symbols.put(sym, value);
+            }
+        }
+        env.dirty = true;
+        return env;
+    }
+    
+    /**
+     * Creates the environment of a function call, binding its arguments.
+     * Under shallow binding the arguments are written into the cells of
+     * their symbols, as are definitions made in the frame, until the frame
+     * is left; otherwise they are local bindings of the new environment.
+     * The new environment is always local.
+     * @param syms The argument list.
+     * @param values Values for the first values.length arguments.
+     * @return The environment to run the body in.
+     */
+    public Environment frame(Symbol[] syms, CronoType[] values) {
+        Environment env;
+        if(globals.bindings == null) {
+            env = new Environment(this, false, -1);
+        }else {
+            env = new Environment(this, false, globals.bindings.size());
+        }
+        for(int i = 0; i < values.length; ++i) {
+            env.put(syms[i], values[i]);
+        }
+        return env;
+    }
+    /**
+     * Creates the environment of a call of a lambda, like frame. Under
+     * shallow binding, closures made in the call keep the values of its
+     * arguments, as do those made in a let or letrec inside it.
+     * @param syms The argument list.
+     * @param values Values for every argument.
+     * @return The environment to run the body in.
+     */
+    public Environment call(Symbol[] syms, CronoType[] values) {
+        Environment env = frame(syms, values);
+        env.arguments = syms;
+        return env;
+    }
+    /**
+     * Creates a local environment in which the arguments of the call this
+     * environment belongs to keep the values they have now.
+     * Under shallow binding the call restores their cells when it returns,
+     * so a closure made in it needs its own copy of the values to still
+     * see them afterwards. Arguments bound locally are left as they are.
+     * @param syms The symbols to keep, if they are arguments of the call.
+     * @return A local copy of this environment with the values bound.
+     */
+    public Environment keep(Collection<Symbol> syms) {
+        Environment env = new Environment(this, false, -1);
+        if(globals.bindings == null || arguments == null) {
+            return env;
+        }
+        for(Symbol sym : arguments) {
+            Cell cell = globals.find(sym);
+            if(syms.contains(sym) && cell != null && cell.value != null &&
+               !symbols.containsKey(sym))
+            {
+                env.symbols = env.symbols.put(sym, cell.value);
+                env.dirty = true;
+            }
+        }
+        return env;
+    }
+    /**
+     * Restores the cells a frame rebound.
+     * Does nothing for environments that are not shallow binding frames.
+     */
+    public void leave() {
+        if(mark >= 0) {
+            globals.bindings.unwind(mark);
+        }
+    }
+    
+    /**
+     * Turns shallow binding of call frames on or off, for every
+     * environment sharing these globals.
+     * @param on If frames should rebind cells in place.
+     */
+    public void shallow(boolean on) {
+        if(on != (globals.bindings != null)) {
+            globals.bindings = on ? new Bindings() : null;
+        }
+    }
+    /**
+     * @return The save stack of shallow binding, or null if it is off.
+     */
+    public Bindings bindings() {
+        return globals.bindings;
+    }
+    
+    /**
+     * @return The undo log of the environments sharing these globals, which
+     *         snapshots of the interpreter state are taken with.
+     */
+    public Journal journal() {
+        if(globals.journal == null) {
+            globals.journal = new Journal();
+        }
+        return globals.journal;
+    }
+    
+    /**
+     * @return If this environment has any local bindings.
+     */
+    public boolean hasLocals() {
+        return symbols.size() != 0;
+    }
+    
+    /**
+     * @return If definitions made in this environment are globals.
+     */
+    public boolean isGlobal() {
+        return global;
+    }
+    
     public void put(CronoStruct struct) {
+        touch();
         dirty = true;
-        this.structs.put(struct.name, struct);
+        structs = structs.put(Symbol.intern(struct.name), struct);
     }
     public void put(TypeId type) {
         put(new CronoTypeId(type));
     }
     public void put(CronoTypeId type) {
+        touch();
         dirty = true;
-        this.types.put(type.type.image, type);
+        types = types.put(type.type.image, type);
     }
     
     public void put(Symbol sym, CronoType value) {
+        if(mark >= 0 && !symbols.containsKey(sym)) {
+            Cell cell = globals.cell(sym);
+            globals.bindings.save(cell);
+            touch(cell);
+            cell.value = value;
+            globals.version++;
+            return;
+        }
+        if(global && !symbols.containsKey(sym)) {
+            Cell cell = globals.cell(sym);
+            touch(cell);
+            cell.value = value;
+            globals.version++;
+            return;
+        }
+        touch();
         dirty = true;
-        symbols.put(sym.toString(), value);
+        symbols = symbols.put(sym, value);
     }
     
     public CronoType get(Symbol sym) {
-        return symbols.get(sym.toString());
+        CronoType value = symbols.get(sym);
+        return (value == null) ? globals.get(sym) : value;
+    }
+    
+    /**
+     * Finds the global cell that a symbol refers to in this environment.
+     * @param sym The symbol to look up.
+     * @return The cell, or null if sym is bound locally.
+     */
+    public Cell cell(Symbol sym) {
+        if(symbols.size() != 0 && symbols.containsKey(sym)) {
+            return null;
+        }
+        return globals.cell(sym);
+    }
+    /**
+     * Checks that a cell is still the one sym refers to in this environment.
+     * @param cell A cell previously returned by cell(Symbol).
+     * @return If the cell is a global of this environment and not shadowed.
+     */
+    public boolean sees(Cell cell) {
+        return globals.owns(cell) && (symbols.size() == 0 ||
+                                      !symbols.containsKey(cell.sym));
     }
     
     public CronoStruct getStruct(Symbol sym) {
-        return structs.get(sym.toString());
+        return structs.get(sym);
     }
     public CronoTypeId getType(CronoTypeId id) {
         CronoTypeId nid = getType(id.type.image);
@@ -101,28 +333,104 @@ public class Environment {
     }
     
     public void remove(Symbol sym) {
+        if(!symbols.containsKey(sym)) {
+            Cell cell = globals.cell(sym);
+            if(mark >= 0) {
+                globals.bindings.save(cell);
+            }
+            touch(cell);
+            cell.value = null;
+            globals.version++;
+            return;
+        }
+        touch();
+        dirty = true;
+        symbols = symbols.remove(sym);
+    }
+    
+    /* Saves the bindings before a change, if a snapshot needs them */
+    private void touch() {
+        if(globals.journal != null) {
+            globals.journal.save(this);
+        }
+    }
+    private void touch(Cell cell) {
+        if(globals.journal != null) {
+            globals.journal.save(this, cell);
+        }
+    }
+    /* Puts back the bindings a Journal saved */
+    void restore(Environment saved) {
+        symbols = saved.symbols;
+        structs = saved.structs;
+        types = saved.types;
+        show_builtins = saved.show_builtins;
+        multiline = saved.multiline;
+        show_types = saved.show_types;
         dirty = true;
-        symbols.remove(sym.toString());
+    }
+    void restore(Cell cell, CronoType value) {
+        cell.value = value;
+        globals.version++;
     }
     
     public boolean contains(Symbol sym) {
-        return symbols.containsKey(sym.toString());
+        return symbols.containsKey(sym) || globals.get(sym) != null;
     }
     
-    public Iterator<Map.Entry<String, CronoType>> iterator() {
-        return symbols.entrySet().iterator();
+    /**
+     * Lists the bindings visible in this environment: its locals, and the
+     * globals and builtins they do not shadow.
+     * Bindings are listed in the order their symbols were first interned,
+     * which is usually the order they first appear in the program; the
+     * tries themselves are ordered by hash.
+     */
+    public Iterator<Map.Entry<Symbol, CronoType>> iterator() {
+        List<Map.Entry<Symbol, CronoType>> entries =
+            new ArrayList<Map.Entry<Symbol, CronoType>>();
+        for(Map.Entry<Symbol, CronoType> entry : symbols) {
+            entries.add(entry);
+        }
+        if(globals.builtins) {
+            for(Map.Entry<Symbol, CronoType> entry : BUILTINS) {
+                Symbol sym = entry.getKey();
+                if(globals.find(sym) == null && !symbols.containsKey(sym)) {
+                    entries.add(entry);
+                }
+            }
+        }
+        for(Cell cell : globals.cells) {
+            if(cell != null && cell.value != null &&
+               !symbols.containsKey(cell.sym))
+            {
+                entries.add(new AbstractMap.SimpleImmutableEntry<Symbol,
+                            CronoType>(cell.sym, cell.value));
+            }
+        }
+        Collections.sort(entries, BY_SYMBOL);
+        return entries.iterator();
     }
+    private static final Comparator<Map.Entry<Symbol, CronoType>> BY_SYMBOL =
+        new Comparator<Map.Entry<Symbol, CronoType>>() {
+            public int compare(Map.Entry<Symbol, CronoType> a,
+                               Map.Entry<Symbol, CronoType> b)
+            {
+                return a.getKey().id - b.getKey().id;
+            }
+        };
     
     private boolean isBuiltin(CronoType item) {
-        return (item instanceof Function && !(item instanceof LambdaFunction));
+        return (item instanceof Function &&
+                !(item instanceof LambdaFunction ||
+                  item instanceof PartialApplication));
     }
     
     public String toString() {
-        if(dirty) {
+        if(dirty || reprVersion != globals.version) {
             StringBuilder result = new StringBuilder();
-            Iterator<Map.Entry<String, CronoType>> iter = iterator();
-            Map.Entry<String, CronoType> entry;
-            String sym;
+            Iterator<Map.Entry<Symbol, CronoType>> iter = iterator();
+            Map.Entry<Symbol, CronoType> entry;
+            Symbol sym;
             CronoType val;
             boolean empty = true;
             while(iter.hasNext()) {
@@ -166,8 +474,52 @@ public class Environment {
                 result.append(")");
                 repr = result.toString();
             }
+            reprVersion = globals.version;
             dirty = false;
         }
         return repr;
     }
+    
+    /* The global cells, indexed by symbol id */
+    private static final class Globals {
+        Cell[] cells = new Cell[64];
+        int version; /*< incremented on every change, for the string repr */
+        Bindings bindings; /*< null unless frames use shallow binding */
+        Journal journal; /*< null until a snapshot is first taken */
+        private final boolean builtins;
+        
+        Globals(boolean builtins) {
+            this.builtins = builtins;
+        }
+        
+        Cell find(Symbol sym) {
+            return (sym.id < cells.length) ? cells[sym.id] : null;
+        }
+        boolean owns(Cell cell) {
+            return find(cell.sym) == cell;
+        }
+        CronoType get(Symbol sym) {
+            Cell cell = find(sym);
+            if(cell != null) {
+                return cell.value;
+            }
+            return builtins ? BUILTINS.get(sym) : null;
+        }
+        
+        /* Builtins get a cell on first use, so they can be redefined */
+        Cell cell(Symbol sym) {
+            Cell cell = find(sym);
+            if(cell == null) {
+                if(sym.id >= cells.length) {
+                    Cell[] ncells = new Cell[Math.max(cells.length * 2,
+                                                      sym.id + 1)];
+                    System.arraycopy(cells, 0, ncells, 0, cells.length);
+                    cells = ncells;
+                }
+                cell = new Cell(sym, builtins ? BUILTINS.get(sym) : null);
+                cells[sym.id] = cell;
+            }
+            return cell;
+        }
+    }
 }
\ No newline at end of file
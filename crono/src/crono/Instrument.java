@@ -0,0 +1,49 @@
+package crono;
+
+import crono.type.Atom;
+import crono.type.CronoType;
+
+/**
+ * Receives the events an Interpreter reports while it visits nodes.
+ * This base class ignores every event. The Interpreter uses it whenever
+ * tracing, AST printing and environment reporting are all off, so that
+ * ordinary runs neither format output nor check options for each node.
+ * @see Tracer
+ */
+public class Instrument {
+    public static final Instrument NONE = new Instrument();
+    
+    /**
+     * Called when the interpreter starts visiting a node.
+     * @param kind The kind of node, as shown in the AST.
+     * @param node The node being visited.
+     */
+    public void visit(String kind, CronoType node) {}
+    /**
+     * Called when the interpreter starts visiting an atom.
+     * @param atom The atom being visited.
+     */
+    public void visit(Atom atom) {}
+    /**
+     * Called with the value a node evaluated to.
+     * @param result The value of the node.
+     */
+    public void result(CronoType result) {}
+    /**
+     * Called after a node that may have changed the environment.
+     */
+    public void environment() {}
+    
+    /**
+     * Called when the interpreter descends into the sub-nodes of a node.
+     */
+    public void indent() {}
+    /**
+     * Called when the interpreter returns from the sub-nodes of a node.
+     */
+    public void deindent() {}
+    /**
+     * Called when evaluation is abandoned because of an exception.
+     */
+    public void reset() {}
+}
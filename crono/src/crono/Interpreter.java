@@ -14,12 +14,20 @@ import crono.type.Function;
 import crono.type.Function.EvalType;
 import crono.type.LambdaFunction;
 import crono.type.Nil;
+import crono.type.PartialApplication;
 import crono.type.Quote;
 import crono.type.Symbol;
 import crono.type.CronoTypeId;
 import crono.type.TypeId;
 
 public class Interpreter extends Visitor {
+    /**
+     * A snapshot of the options and the environment stack.
+     * Taking one is O(1): it records the depth of the stack and opens a
+     * Journal snapshot, which saves each environment and global cell the
+     * first time it is changed afterwards. The snapshot stays open until it
+     * is restored with setState or released with releaseState.
+     */
     public class InterpreterState extends Visitor.VisitorState {
         public boolean showEnv, rShowEnv;
         public boolean showClosure, rShowClosure;
@@ -27,7 +35,10 @@ public class Interpreter extends Visitor {
         public boolean trace, rTrace;
         public boolean printAST, rPrintAST;
         public boolean debug, rDebug;
-        public Stack<Environment> envStack;
+        public final int depth; /*< The size of the environment stack */
+        private final Journal journal;
+        private final int outer; /*< Returned by journal.mark */
+        private boolean open;
         
         public InterpreterState() {
             showEnv = Interpreter.this.showEnv;
@@ -43,19 +54,16 @@ public class Interpreter extends Visitor {
             debug = Interpreter.this.debug;
             rDebug = Interpreter.this.rDebug;
             
-            envStack = new Stack<Environment>();
-            envStack.addAll(Interpreter.this.envStack);
-            int size = envStack.size();
-            for(int i = 0; i < size; ++i) {
-                envStack.set(i, new Environment(envStack.get(i)));
-            }
+            depth = envStack.size();
+            journal = getEnv().journal();
+            outer = journal.mark();
+            open = true;
         }
     }
     
     private static final String _type_scope_err = "No type %s in scope";
     private static final String _type_mismatch =
         "Function '%s' expected arguments %s; got %s";
-    private static final String _indent_level = "  ";
     
     protected boolean showEnv, rShowEnv;
     protected boolean showClosure, rShowClosure;
@@ -64,14 +72,14 @@ public class Interpreter extends Visitor {
     protected boolean printAST, rPrintAST;
     protected boolean debug, rDebug;
     protected EvalType eval;
+    /* Set while visiting a node in tail position, see tail(CronoType) */
+    protected boolean tail;
+    /* Set while a TailCall is being returned, see popEnv */
+    protected boolean handover;
     
-    protected StringBuilder indent;
+    protected Instrument instrument; /*< Reports visits, see instrument() */
     protected Stack<Environment> envStack;
     
-    /* Used for keeping track of how deep we are down the nested-lambda rabbit
-     * hole. */
-    private int lambdaDepth;
-    
     /**
      * Creates a new Interpreter with default option values.
      */
@@ -83,14 +91,37 @@ public class Interpreter extends Visitor {
         printAST(false);
         debug(false);
         
-        lambdaDepth = 0;
-        
-        indent = new StringBuilder();
         eval = Function.EvalType.FULL;
         
         envStack = new Stack<Environment>();
         reset(); /*< Set up initial environment and types */
     }
+    /**
+     * Creates a new Interpreter that takes over the options and environment
+     * of an existing one.
+     * Used to switch execution engines after options have been parsed.
+     * @param base The Interpreter to copy options and environments from.
+     */
+    protected Interpreter(Interpreter base) {
+        showEnv = base.showEnv;
+        rShowEnv = base.rShowEnv;
+        showClosure = base.showClosure;
+        rShowClosure = base.rShowClosure;
+        dynamic = base.dynamic;
+        rDynamic = base.rDynamic;
+        trace = base.trace;
+        rTrace = base.rTrace;
+        printAST = base.printAST;
+        rPrintAST = base.rPrintAST;
+        debug = base.debug;
+        rDebug = base.rDebug;
+        
+        eval = Function.EvalType.FULL;
+        instrument();
+        
+        envStack = new Stack<Environment>();
+        envStack.addAll(base.envStack);
+    }
     
     /**
      * Turns environment reporting on or off.
@@ -100,6 +131,7 @@ public class Interpreter extends Visitor {
     public void showEnv(boolean on) {
         showEnv = on;
         rShowEnv = on;
+        instrument();
     }
     /**
      * Turns printing of closures on or off.
@@ -112,11 +144,19 @@ public class Interpreter extends Visitor {
     }
     /**
      * Turns dynamic scoping on or off.
-     * TODO: add a description of dynamic scoping.
+     * Under dynamic scope a function sees the variables of its callers
+     * rather than those where it was defined. Calls bind their arguments
+     * in place, in the cells of the symbols, and restore them on return, so
+     * lookups never search through the environments of the callers; see
+     * Bindings.
+     * @param on If the Interpreter should use dynamic scope.
      */
     public void dynamic(boolean on) {
         dynamic = on;
         rDynamic = on;
+        if(envStack != null && !envStack.isEmpty()) {
+            getEnv().shallow(on);
+        }
     }
     /**
      * Turns operation tracing on or off.
@@ -125,6 +165,7 @@ public class Interpreter extends Visitor {
     public void trace(boolean on) {
         trace = on;
         rTrace = on;
+        instrument();
     }
     /**
      * Turn AST printing on or off.
@@ -133,6 +174,7 @@ public class Interpreter extends Visitor {
     public void printAST(boolean on) {
         printAST = on;
         rPrintAST = on;
+        instrument();
     }
     /**
      * Turns debug printing on or off.
@@ -144,21 +186,19 @@ public class Interpreter extends Visitor {
     }
     
     /**
-     * Helper method to indent correctly.
+     * Chooses how visits are reported.
+     * If any printing option is on by default, visits are reported to a
+     * Tracer, which checks the options as they are turned off and back on
+     * around builtins. Otherwise nothing can ever be printed, and visits are
+     * not reported at all.
      */
-    protected void indent() {
-        indent.append(_indent_level);
-    }
-    /**
-     * Helper method to de-indent correctly.
-     */
-    protected void deindent() {
-        int size = indent.length();
-        if(size < 2) {
-            indent = new StringBuilder();
+    protected void instrument() {
+        if(rShowEnv || rTrace || rPrintAST) {
+            if(!(instrument instanceof Tracer)) {
+                instrument = new Tracer(this);
+            }
         }else {
-            indent.deleteCharAt(size - 1);
-            indent.deleteCharAt(size - 2);
+            instrument = Instrument.NONE;
         }
     }
     
@@ -184,46 +224,6 @@ public class Interpreter extends Visitor {
         printAST = false;
     }
     
-    /**
-     * Prints the trace notification of a node visit.
-     * This function only prints a trace if the Interpreter.trace(boolean)
-     * method was called with a value of true.
-     * @param node The node that is being visited.
-     */
-    protected void traceVisit(CronoType node) {
-        if(trace) {
-            System.out.printf("%sVisiting %s\n", indent, node.repr());
-        }
-    }
-    /**
-     * Prints the trace results of evaluating a node.
-     * This function only prints a trace if the Interpreter.trace(boolean)
-     * method was called with a value of true.
-     * @param result The results to report
-     */
-    protected void traceResult(CronoType result) {
-        if(trace) {
-            System.out.printf("%sResult: %s [%s]\n", indent, result.repr(),
-                              result.typeId());
-        }
-    }
-    /**
-     * Prints out a message that a node was visited on the AST.
-     * This function only prints a trace if the Interpreter.printAST(boolean)
-     * method was called with a value of true.
-     * @param nodeName The name of the node type that is being visited.
-     */
-    protected void printASTNode(String nodeName) {
-        if(printAST) {
-            System.out.printf("%sAST: %s\n", indent, nodeName);
-        }
-    }
-    protected void printEnvironment() {
-        if(showEnv) {
-            System.out.printf("%sEnv: %s\n", indent, getEnv());
-        }
-    }
-    
     /**
      * On exceptions, instead of throwing and forgetting, it should call except
      * to reset the evaluation level, reset all options and then throw. This
@@ -232,7 +232,8 @@ public class Interpreter extends Visitor {
     protected void except(RuntimeException e) {
         resetOptions();
         eval = EvalType.FULL;
-        indent = new StringBuilder();
+        tail = false;
+        instrument.reset();
         throw e;
     }
     
@@ -240,8 +241,10 @@ public class Interpreter extends Visitor {
      * Resets the Interpreter to it's default state, including the environment.
      */
     public void reset() {
+        tail = false;
         envStack.clear();
         pushEnv(new Environment());
+        getEnv().shallow(rDynamic);
         resetOptions();
     }
     
@@ -258,7 +261,8 @@ public class Interpreter extends Visitor {
      *         * Perform name substitution by visiting all sub nodes.
      *      b. The evaluation type is FULL:
      *         * Number of arguments statisfys the function requirments:
-     *            * Run the function
+     *            * Run the function; lambdas bind their arguments in a new
+     *              environment and run their original body
      *         * Number of arguments is less than required:
      *            * Curry the function
      *         * Too many arguments:
@@ -269,26 +273,26 @@ public class Interpreter extends Visitor {
      * @return The value obtained by visiting this node.
      */
     public CronoType visit(Cons c) {
+        boolean tailpos = tail;
+        tail = false; /*< Sub-nodes are never in tail position */
+        
         if(eval == EvalType.NONE) {
-            printASTNode("List Node");
-            traceVisit(c);
-            traceResult(c);
-            printEnvironment();
+            instrument.visit("List Node", c);
+            instrument.result(c);
+            instrument.environment();
             return c;
         }
         
         Iterator<CronoType> iter = c.iterator();
         if(!(iter.hasNext())) {
-            printASTNode("Nil Node");
-            traceVisit(Nil.NIL);
-            traceResult(Nil.NIL);
-            printEnvironment();
+            instrument.visit("Nil Node", Nil.NIL);
+            instrument.result(Nil.NIL);
+            instrument.environment();
             return c; /*< C is an empty list (may be Nil or T) */
         }
         
-        printASTNode("Function Application Node");
-        traceVisit(c);
-        indent();
+        instrument.visit("Function Application Node", c);
+        instrument.indent();
         CronoType value = iter.next().accept(this);
         if(value instanceof Function) {
             Function fun = ((Function)value);
@@ -298,39 +302,81 @@ public class Interpreter extends Visitor {
             if(eval.level > reserve.level) {
                 eval = reserve;
             }
-            List<CronoType> args = new ArrayList<CronoType>();
-            while(iter.hasNext()) {
-                args.add(iter.next().accept(this));
+            /* Builtins taking up to three arguments are given them in locals
+             * when there are exactly that many; only the other cases need a
+             * list of them */
+            CronoType first = null, second = null, third = null;
+            int arglen = 0;
+            int nargs = fun.arity;
+            boolean fixed = (eval == EvalType.FULL && nargs <= 3 &&
+                             !fun.variadic &&
+                             !(fun instanceof LambdaFunction));
+            if(fixed) {
+                for(; arglen < nargs && iter.hasNext(); ++arglen) {
+                    CronoType arg = iter.next().accept(this);
+                    if(arglen == 0) {
+                        first = arg;
+                    }else if(arglen == 1) {
+                        second = arg;
+                    }else {
+                        third = arg;
+                    }
+                }
+                fixed = (arglen == nargs && !iter.hasNext());
+            }
+            List<CronoType> args = null;
+            if(!fixed) {
+                args = new ArrayList<CronoType>();
+                if(arglen > 0) {
+                    args.add(first);
+                }
+                if(arglen > 1) {
+                    args.add(second);
+                }
+                if(arglen > 2) {
+                    args.add(third);
+                }
+                while(iter.hasNext()) {
+                    args.add(iter.next().accept(this));
+                }
+                arglen = args.size();
             }
             eval = reserve;
             
-            int arglen = args.size();
-            int nargs = fun.arity;
+            if(fixed) {
+                return runFixed(fun, first, second, third, tailpos);
+            }
             if(arglen < nargs) {
                 if(arglen == 0) {
-                    if(fun instanceof LambdaFunction) {
-                        /* We technically have to substitute these */
-                        fun = substitute((LambdaFunction)fun,new CronoType[0]);
-                    }
-                    
-                    deindent();
-                    traceResult(fun);
-                    printEnvironment();
+                    instrument.deindent();
+                    instrument.result(fun);
+                    instrument.environment();
                     return fun;
                 }
                 
                 /* Curry it */
                 if(fun instanceof LambdaFunction) {
-                    /* Lambdas are easy - just use the substitute method */
+                    /* Lambdas bind the arguments they were given */
                     LambdaFunction lfun = ((LambdaFunction)fun);
                     CronoType[] larr = new CronoType[arglen];
-                    LambdaFunction clfun = substitute(lfun,args.toArray(larr));
-                    deindent();
-                    traceResult(clfun);
-                    printEnvironment();
+                    LambdaFunction clfun = lfun.curry(args.toArray(larr));
+                    instrument.deindent();
+                    instrument.result(clfun);
+                    instrument.environment();
                     
                     return clfun;
                 }
+                if(fun.eval == EvalType.FULL) {
+                    /* Builtins keep their arguments for when the rest come */
+                    CronoType[] parr = new CronoType[arglen];
+                    PartialApplication pfun =
+                        new PartialApplication(fun, args.toArray(parr));
+                    instrument.deindent();
+                    instrument.result(pfun);
+                    instrument.environment();
+                    
+                    return pfun;
+                }
                 /* Builtin partial evaluation */
                 List<CronoType> body = new LinkedList<CronoType>();
                 body.add(fun);
@@ -340,7 +386,7 @@ public class Interpreter extends Visitor {
                 List<Symbol> arglist = new ArrayList<Symbol>();
                 Symbol sym;
                 for(int i = arglen, n = 0; i < nargs; ++i, ++n) {
-                    sym = new Symbol(String.format("_i?%d!_", n));
+                    sym = Symbol.intern(String.format("_i?%d!_", n));
                     body.add(sym);
                     arglist.add(sym);
                 }
@@ -351,9 +397,9 @@ public class Interpreter extends Visitor {
                 CronoType[] barr = new CronoType[] {Cons.fromList(body)};
                 blfun = new LambdaFunction(arglist.toArray(narglist), barr,
                                            getEnv());
-                deindent();
-                traceResult(blfun);
-                printEnvironment();
+                instrument.deindent();
+                instrument.result(blfun);
+                instrument.environment();
                 
                 return blfun;
             }
@@ -372,54 +418,57 @@ public class Interpreter extends Visitor {
                 boolean islfun = (fun instanceof LambdaFunction);
                 if(islfun) {
                     LambdaFunction lfun = (LambdaFunction)fun;
-                    if(dynamic) {
-                        lfun = new LambdaFunction(lfun.arglist, lfun.body,
-                                                  getEnv());
-                    }
-                    fun = substitute(lfun, argarray);
-                    argarray = new CronoType[0];
-                    args.clear();
-                }
-                
-                TypeId[] types = new TypeId[args.size()];
-                for(int i = 0; i < types.length; ++i) {
-                    types[i] = argarray[i].typeId();
-                }
-                int check = 0;
-                for(int i = 0; i < argarray.length; ++i) {
-                    check = Math.min(i, fun.args.length - 1);
-                    if(!(fun.args[check].isType(argarray[i]))) {
-                        String argstr = Arrays.toString(types);
-                        String expected = Arrays.toString(fun.args);
-                        except(new InterpreterException(_type_mismatch, fun,
-                                                        expected, argstr));
+                    if(tailpos) {
+                        /* Let the caller run it once our frame is gone */
+                        instrument.deindent();
+                        handover = true;
+                        return new TailCall(lfun, argarray);
                     }
+                    fun = lfun;
+                }else {
+                    checkTypes(fun, argarray);
+                    optionsOff();
                 }
                 
-                if(!islfun) {
-                    optionsOff();
+                /* Under dynamic scope, frames left with a TailCall keep
+                 * their bindings until the call is resolved here */
+                Bindings bindings = null;
+                int outer = 0;
+                if(dynamic && !tailpos) {
+                    bindings = getEnv().bindings();
+                    outer = bindings.open();
                 }
                 CronoType fresult = null;
                 try {
-                    fresult = fun.run(this, args.toArray(argarray));
+                    fresult = fun.run(this, argarray);
+                    if(!tailpos) {
+                        boolean handed = (fresult instanceof TailCall);
+                        fresult = TailCall.resolve(this, fresult);
+                        if(bindings != null) {
+                            bindings.close(outer, handed);
+                        }
+                    }
                 }catch(RuntimeException re) {
+                    if(bindings != null) {
+                        bindings.close(outer, true);
+                    }
                     except(re);
                 }
                 if(!islfun) {
                     resetOptions();
                 }
                 
-                deindent();
-                traceResult(fresult);
-                printEnvironment();
+                instrument.deindent();
+                instrument.result(fresult);
+                instrument.environment();
                 
                 return fresult;
             }else {
                 args.add(0, value);
-                deindent();
+                instrument.deindent();
                 Cons cresult = Cons.fromList(args);
-                traceResult(cresult);
-                printEnvironment();
+                instrument.result(cresult);
+                instrument.environment();
                 
                 return cresult;
             }
@@ -430,16 +479,122 @@ public class Interpreter extends Visitor {
                 args.add(iter.next().accept(this));
             }
             CronoType conres = Cons.fromList(args);
-            traceResult(conres);
-            deindent();
+            instrument.result(conres);
+            instrument.deindent();
             return conres;
         }
-        deindent();
+        instrument.deindent();
         /* The initial value is not a function */
         except(new InterpreterException("Invalid Function Application: %s is not a function in %s", value, c));
         return null;
     }
     
+    /**
+     * Runs a builtin given exactly as many arguments as it takes, at most
+     * three, through its fixed-arity entry point. No argument array is built
+     * unless a type check fails.
+     * @param fun A builtin that fully evaluates its arguments.
+     * @param tailpos If the application is in tail position.
+     * @return The result of the application.
+     */
+    private CronoType runFixed(Function fun, CronoType first,
+                               CronoType second, CronoType third,
+                               boolean tailpos)
+    {
+        int nargs = fun.arity;
+        if(fun.checked && !((nargs < 1 || fun.accepts(0, first)) &&
+                            (nargs < 2 || fun.accepts(1, second)) &&
+                            (nargs < 3 || fun.accepts(2, third))))
+        {
+            CronoType[] argarray = {first, second, third};
+            checkTypes(fun, Arrays.copyOf(argarray, nargs));
+        }
+        optionsOff();
+    
+        Bindings bindings = null;
+        int outer = 0;
+        if(dynamic && !tailpos) {
+            bindings = getEnv().bindings();
+            outer = bindings.open();
+        }
+        CronoType fresult = null;
+        try {
+            if(nargs == 0) {
+                fresult = fun.run0(this);
+            }else if(nargs == 1) {
+                fresult = fun.run1(this, first);
+            }else if(nargs == 2) {
+                fresult = fun.run2(this, first, second);
+            }else {
+                fresult = fun.run3(this, first, second, third);
+            }
+            if(!tailpos) {
+                boolean handed = (fresult instanceof TailCall);
+                fresult = TailCall.resolve(this, fresult);
+                if(bindings != null) {
+                    bindings.close(outer, handed);
+                }
+            }
+        }catch(RuntimeException re) {
+            if(bindings != null) {
+                bindings.close(outer, true);
+            }
+            except(re);
+        }
+        resetOptions();
+    
+        instrument.deindent();
+        instrument.result(fresult);
+        instrument.environment();
+    
+        return fresult;
+    }
+    
+    /**
+     * Checks the arguments of a function application against the types the
+     * function expects.
+     * Variadic functions check any extra arguments against their last type.
+     * @param fun The function being applied.
+     * @param args The evaluated arguments.
+     */
+    protected void checkTypes(Function fun, CronoType[] args) {
+        if(!fun.checked) {
+            return;
+        }
+        int check = 0;
+        for(int i = 0; i < args.length; ++i) {
+            check = Math.min(i, fun.args.length - 1);
+            if(!(fun.accepts(check, args[i]))) {
+                TypeId[] types = new TypeId[args.length];
+                for(int j = 0; j < types.length; ++j) {
+                    types[j] = args[j].typeId();
+                }
+                String argstr = Arrays.toString(types);
+                String expected = Arrays.toString(fun.args);
+                except(new InterpreterException(_type_mismatch, fun,
+                                                expected, argstr));
+            }
+        }
+    }
+    
+    /**
+     * Visits a node in tail position.
+     * Applications of lambdas in tail position are not run; a TailCall is
+     * returned instead, and run by the closest enclosing application that is
+     * not in tail position. This keeps tail recursive loops from growing the
+     * Java stack. Tail calls are not used while tracing, printing the AST or
+     * showing the environment, so that their output is unchanged.
+     * @param node The node to visit.
+     * @return The value of the node, or a TailCall.
+     */
+    public CronoType tail(CronoType node) {
+        if(!(node instanceof Cons) || trace || printAST || showEnv) {
+            return node.accept(this);
+        }
+        tail = true;
+        return node.accept(this);
+    }
+    
     /**
      * Visits an atom node.
      * The results of this method depend on the current evaluation type of the
@@ -455,10 +610,9 @@ public class Interpreter extends Visitor {
      * @return The value obtained by visiting this node.
      */
     public CronoType visit(Atom a) {
-        printASTNode(String.format("Atom Node -> %s[%s]", a, a.typeId()));
-        traceVisit(a);
+        instrument.visit(a);
         if(eval == EvalType.NONE) {
-            traceResult(a);
+            instrument.result(a);
             return a;
         }
         
@@ -484,7 +638,8 @@ public class Interpreter extends Visitor {
                 t = res; /*< Revert to symbol resolution */
             }
         }
-        traceResult(t); /* We don't need to show the environment after atoms */
+        /* We don't need to show the environment after atoms */
+        instrument.result(t);
         return t;
     }
     
@@ -496,15 +651,14 @@ public class Interpreter extends Visitor {
      * @return The node below this unchanged.
      */
     public CronoType visit(Quote q) {
-        printASTNode("Quote Node");
-        traceVisit(q);
+        instrument.visit("Quote Node", q);
         
         EvalType reserve = eval;
         eval = EvalType.NONE;
         CronoType result = q.node.accept(this);
         eval = reserve;
         
-        traceResult(result);
+        instrument.result(result);
         return result;
     }
     
@@ -523,12 +677,19 @@ public class Interpreter extends Visitor {
         rTrace = is.rTrace;
         printAST = is.printAST;
         rPrintAST = is.rPrintAST;
+        instrument();
         
-        envStack = new Stack<Environment>();
-        envStack.addAll(is.envStack);
-        int size = envStack.size();
-        for(int i = 0; i < size; ++i) {
-            envStack.set(i, new Environment(envStack.get(i)));
+        unwind(is.depth);
+        if(is.open) {
+            is.journal.rollback(is.outer);
+            is.open = false;
+        }
+    }
+    public void releaseState(Visitor.VisitorState state) {
+        InterpreterState is = (InterpreterState)state;
+        if(is.open) {
+            is.journal.release(is.outer);
+            is.open = false;
         }
     }
     
@@ -538,73 +699,37 @@ public class Interpreter extends Visitor {
         }
     }
     
-    /* Cut down on code duplication. */
-    private LambdaFunction substitute(LambdaFunction lfun, CronoType[] args) {
-        EvalType reserve = eval;
-        LambdaFunction ret = null;
-        
-        /* Everything we do here should be undone after substutition. */
-        lambdaDepth++;
-        if(lambdaDepth <= 1) {
-            optionsOff();
-            eval = EvalType.PARTIAL;
-            pushEnv(new Environment(false));
-            ret = doSubst(lfun, args);
-            popEnv();
-            eval = reserve;
-            resetOptions();
-        }else {
-            /* If this is not the first time, we need to create a copy of the
-             * environment. This could be optimized by using some form of
-             * transactional database instead of a map for the Environment.
-             */
-            pushEnv(new Environment(getEnv()));
-            ret = doSubst(lfun, args);
-            popEnv();
-        }
-        lambdaDepth--;
-        return ret;
-    }
-    private LambdaFunction doSubst(LambdaFunction lfun, CronoType[] args) {
-        /* Initialization for substitution */
-        Environment env = getEnv();
-        CronoType[] body = new CronoType[lfun.body.length];
-        int remain = lfun.arglist.length - args.length;
-        if(remain < 0) {
-            except(new TooManyArgsException(lfun, lfun.arglist.length,
-                                            args.length, args));
-        }
-        Symbol[] largs = new Symbol[remain];
-        
-        /* Put variables we have in the substitution env */
-        for(int i = 0; i < args.length; ++i) {
-            env.put(lfun.arglist[i], args[i]);
-        }
-        
-        /* Remove symbols that this lambda defines but doesn't have. */
-        Symbol missing = null;
-        for(int i = 0; i < largs.length; ++i) {
-            missing = lfun.arglist[args.length + i];
-            largs[i] = missing;
-            env.remove(missing);
-        }
-        
-        /* Loop over the body and have the interpreter visit them */
-        for(int i = 0; i < body.length; ++i) {
-            /* This may call substitute */
-            body[i] = lfun.body[i].accept(this);
-        }
-        
-        return new LambdaFunction(largs, body, lfun.environment);
+    public boolean debugging() {
+        return debug;
     }
     
     public Environment getEnv() {
         return envStack.peek();
     }
     public void pushEnv(Environment env) {
+        handover = false;
         envStack.push(env);
     }
+    /**
+     * Leaves every environment above the given depth of the stack, such as
+     * the frames of calls that an error escaped from.
+     * @param depth The size of the stack to go back to.
+     */
+    protected void unwind(int depth) {
+        while(envStack.size() > depth) {
+            envStack.pop().leave();
+        }
+    }
+    /**
+     * Leaves the current environment.
+     * A frame that returns a TailCall keeps its shallow bindings, since the
+     * callee must still see them; they are restored once the TailCall has
+     * been resolved.
+     */
     public void popEnv() {
-        envStack.pop();
+        Environment env = envStack.pop();
+        if(!handover) {
+            env.leave();
+        }
     }
 }
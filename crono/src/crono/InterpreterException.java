@@ -1,7 +1,59 @@
 package crono;
 
+import crono.type.CronoPrimitive;
+import crono.type.CronoTypeId;
+import crono.type.Nil;
+import crono.type.Symbol;
+import crono.type.TruthValue;
+import crono.type.TypeId;
+
+/**
+ * An error raised while interpreting a program.
+ * Programs catch these with try, often just to leave a search early, so
+ * they are kept about as cheap as a return: no Java stack trace is recorded
+ * unless stackTraces is turned on to debug the interpreter itself, and the
+ * message is only formatted when asked for. Arguments that could change
+ * before then, such as lists, vectors and structs, are converted to strings
+ * when the exception is made, so the message shows them as they were.
+ */
 public class InterpreterException extends RuntimeException {
+    private static boolean traces = false;
+    
+    private final String format;
+    private final Object[] args;
+    private String message; /*< Formatted on the first getMessage */
+    
     public InterpreterException(String message, Object... args) {
-        super(String.format(message, args));
+        super(null, null, traces, traces);
+        this.format = message;
+        this.args = new Object[args.length]; /*< args may be a CronoType[] */
+        for(int i = 0; i < args.length; ++i) {
+            boolean keep = immutable(args[i]);
+            this.args[i] = keep ? args[i] : String.valueOf(args[i]);
+        }
+    }
+    
+    /**
+     * Turns recording of Java stack traces on or off for exceptions made
+     * afterwards.
+     * @param on If new exceptions should record where they were thrown.
+     */
+    public static void stackTraces(boolean on) {
+        traces = on;
+    }
+    
+    private static boolean immutable(Object arg) {
+        return (arg == null || arg instanceof String ||
+                arg instanceof Number || arg instanceof Character ||
+                arg instanceof CronoPrimitive || arg instanceof Symbol ||
+                arg instanceof CronoTypeId || arg instanceof TypeId ||
+                arg instanceof Nil || arg instanceof TruthValue);
+    }
+    
+    public String getMessage() {
+        if(message == null) {
+            message = String.format(format, args);
+        }
+        return message;
     }
 }
@@ -0,0 +1,151 @@
+package crono;
+
+import java.util.Arrays;
+
+import crono.type.CronoType;
+
+/**
+ * The undo log behind Interpreter snapshots, which try takes before running
+ * its body.
+ * Taking a snapshot only records where the log ends. While a snapshot is
+ * open, the first change to the local bindings of an environment saves a
+ * copy of it here; since its maps are persistent the copy is O(1). The
+ * first write to a global cell saves the value it replaced, the way
+ * Bindings does for shallow binding. Rolling back restores every
+ * environment and cell saved since the snapshot, and releasing a snapshot
+ * that was not needed drops its saves once no snapshot is open.
+ * Nothing is saved while no snapshot is open.
+ */
+public class Journal {
+    private Environment[] envs; /*< The environment each change was made in */
+    private Environment[] copies; /*< The state each env had when saved */
+    private Cell[] cells; /*< The cell written, for saves of globals */
+    private CronoType[] values; /*< The value each cell had when saved */
+    private int[] saved; /*< The previous save of each env or cell */
+    private int size;
+    private int floor; /*< Where the innermost open snapshot starts */
+    private int open; /*< The number of open snapshots */
+    private long clock; /*< Counts snapshots, to date environments */
+    private long[] opened; /*< The clock when each open snapshot opened */
+    
+    public Journal() {
+        this.envs = new Environment[16];
+        this.copies = new Environment[16];
+        this.cells = new Cell[16];
+        this.values = new CronoType[16];
+        this.saved = new int[16];
+        this.opened = new long[16];
+    }
+    
+    /**
+     * @return The number of snapshots taken so far. An environment made
+     *         after the innermost open snapshot was taken is not saved,
+     *         since nothing made before it can see the environment once
+     *         the snapshot is rolled back.
+     */
+    long clock() {
+        return clock;
+    }
+    
+    /**
+     * Saves an environment whose bindings are about to change.
+     */
+    void save(Environment env) {
+        if(open == 0 || env.journaled >= floor ||
+           env.born >= opened[open - 1])
+        {
+            return; /*< Not needed, or already saved since the snapshot */
+        }
+        int i = entry(env);
+        copies[i] = new Environment(env);
+        saved[i] = env.journaled;
+        env.journaled = i;
+    }
+    /**
+     * Saves the value of a global cell that is about to be written.
+     * @param env The environment the cell is written through.
+     * @param cell The cell.
+     */
+    void save(Environment env, Cell cell) {
+        if(open == 0 || cell.journaled >= floor) {
+            return;
+        }
+        int i = entry(env);
+        cells[i] = cell;
+        values[i] = cell.value;
+        saved[i] = cell.journaled;
+        cell.journaled = i;
+    }
+    private int entry(Environment env) {
+        if(size == envs.length) {
+            int length = size * 2;
+            envs = Arrays.copyOf(envs, length);
+            copies = Arrays.copyOf(copies, length);
+            cells = Arrays.copyOf(cells, length);
+            values = Arrays.copyOf(values, length);
+            saved = Arrays.copyOf(saved, length);
+        }
+        envs[size] = env;
+        return size++;
+    }
+    
+    /**
+     * Opens a snapshot.
+     * @return The snapshot that was open before, to pass to rollback or
+     *         release.
+     */
+    public int mark() {
+        int outer = floor;
+        floor = size;
+        if(open == opened.length) {
+            opened = Arrays.copyOf(opened, open * 2);
+        }
+        opened[open++] = ++clock;
+        return outer;
+    }
+    /**
+     * Restores every environment and cell changed since the innermost
+     * snapshot was opened, and closes it.
+     * @param outer The value mark returned.
+     */
+    public void rollback(int outer) {
+        unwind(floor, true);
+        close(outer);
+    }
+    /**
+     * Closes the innermost snapshot, keeping the changes made since.
+     * An enclosing snapshot can still roll them back.
+     * @param outer The value mark returned.
+     */
+    public void release(int outer) {
+        close(outer);
+    }
+    
+    private void close(int outer) {
+        floor = outer;
+        if(--open == 0) {
+            unwind(0, false);
+        }
+    }
+    private void unwind(int mark, boolean restore) {
+        while(size > mark) {
+            Environment env = envs[--size];
+            Cell cell = cells[size];
+            if(cell == null) {
+                if(restore) {
+                    env.restore(copies[size]);
+                }
+                env.journaled = saved[size];
+            }else {
+                if(restore) {
+                    env.restore(cell, values[size]);
+                }
+                cell.journaled = saved[size];
+            }
+            envs[size] = null;
+            copies[size] = null;
+            cells[size] = null;
+            values[size] = null;
+        }
+    }
+}
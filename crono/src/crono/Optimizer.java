@@ -0,0 +1,362 @@
+package crono;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import crono.compiler.Closure;
+import crono.compiler.Frame;
+import crono.type.Cons;
+import crono.type.CronoPrimitive;
+import crono.type.CronoType;
+import crono.type.Function;
+import crono.type.Function.EvalType;
+import crono.type.LambdaFunction;
+import crono.type.Nil;
+import crono.type.PartialApplication;
+import crono.type.Quote;
+import crono.type.Symbol;
+import crono.type.TruthValue;
+
+/**
+ * Simplifies a parsed program before it is run.
+ * Applications of pure builtins to literal arguments are replaced by their
+ * result, and such applications with too few arguments are replaced by the
+ * curried function they evaluate to, so neither is redone each time the
+ * code is reached.
+ * A builtin name is only trusted if it refers to the builtin when the
+ * program is loaded and the program never binds it itself, with define,
+ * defun, undef, try, or as the argument of a lambda, let or letrec.
+ * Names can also be bound by code that eval or load runs, which this pass
+ * never sees, so a program that can reach either of them, directly or
+ * through a function it calls, is left as it is.
+ * Each program is checked on its own, so rebinding a builtin in a program
+ * loaded later does not undo what was folded earlier; the pass is off
+ * unless the optimize option is given.
+ */
+public class Optimizer {
+    /* Builtins whose result depends only on their arguments */
+    private static final Set<CronoFunction> PURE =
+        EnumSet.of(CronoFunction.ADD, CronoFunction.SUB, CronoFunction.MUL,
+                   CronoFunction.DIV, CronoFunction.LT, CronoFunction.GT,
+                   CronoFunction.EQ, CronoFunction.INT, CronoFunction.CHAR,
+                   CronoFunction.FLOAT);
+    
+    private final Visitor v;
+    private final Environment env;
+    private final Set<Symbol> bound; /*< Names the program binds */
+    
+    private Optimizer(Visitor v, CronoType[] program) {
+        this.v = v;
+        this.env = v.getEnv();
+        this.bound = new HashSet<Symbol>();
+        for(int i = 0; i < program.length; ++i) {
+            binders(program[i]);
+        }
+    }
+    
+    /**
+     * Optimizes a program if the optimize option is on.
+     * Programs run by an Interpreter that reports its visits are left as
+     * they are, so that every application is still shown.
+     * @param v The visitor the program will be run with; curried builtins
+     *          are built by it, and names are looked up in its environment.
+     * @param program The parsed program.
+     * @return The program to run, which shares every form that could not be
+     *         simplified with the original.
+     */
+    public static CronoType[] optimize(Visitor v, CronoType[] program) {
+        if(!Crono.optimize || (v instanceof Interpreter &&
+                               ((Interpreter)v).instrument != Instrument.NONE))
+        {
+            return program;
+        }
+        Optimizer opt = new Optimizer(v, program);
+        Set<LambdaFunction> seen = new HashSet<LambdaFunction>();
+        for(int i = 0; i < program.length; ++i) {
+            if(opt.runsCode(program[i], opt.env, seen)) {
+                return program;
+            }
+        }
+        CronoType[] result = new CronoType[program.length];
+        for(int i = 0; i < program.length; ++i) {
+            result[i] = opt.optimize(program[i]);
+        }
+        return result;
+    }
+    
+    /**
+     * Checks if evaluating a node could run code that is not in the
+     * program, through eval or load. Functions the node refers to are
+     * searched as well, with their names looked up where they were made.
+     * @param seen The lambdas already searched.
+     */
+    private boolean runsCode(CronoType node, Environment scope,
+                             Set<LambdaFunction> seen)
+    {
+        if(node instanceof Quote) {
+            return runsCode(((Quote)node).node, scope, seen);
+        }
+        if(node instanceof Cons) {
+            for(CronoType item : (Cons)node) {
+                if(runsCode(item, scope, seen)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if(node instanceof Symbol) {
+            return runsCode(scope.get((Symbol)node), seen);
+        }
+        return false;
+    }
+    private boolean runsCode(CronoType value, Set<LambdaFunction> seen) {
+        if(value instanceof PartialApplication) {
+            value = ((PartialApplication)value).target;
+        }
+        if(value == CronoFunction.EVAL.function ||
+           value == CronoFunction.LOAD.function)
+        {
+            return true;
+        }
+        if(value instanceof LambdaFunction) {
+            LambdaFunction lambda = (LambdaFunction)value;
+            if(!seen.add(lambda)) {
+                return false;
+            }
+            for(CronoType node : lambda.body) {
+                if(runsCode(node, lambda.environment, seen)) {
+                    return true;
+                }
+            }
+            if(lambda instanceof Closure) {
+                /* Compiled closures keep their locals in frames */
+                Frame frame = ((Closure)lambda).frame;
+                for(; frame != null; frame = frame.parent) {
+                    for(CronoType slot : frame.slots) {
+                        if(runsCode(slot, seen)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    /* Collects every name bound anywhere in the program */
+    private void binders(CronoType node) {
+        if(!(node instanceof Cons) || !proper((Cons)node)) {
+            return;
+        }
+        List<CronoType> list = ((Cons)node).toList();
+        CronoFunction fun = builtin(list.get(0));
+        if(fun == CronoFunction.UNDEFINE) {
+            symbols(list.subList(1, list.size()));
+        }else if((fun == CronoFunction.DEFINE || fun == CronoFunction.DEFUN ||
+                  fun == CronoFunction.TRY) && list.size() > 1)
+        {
+            bound(list.get(1));
+        }
+        if(fun == CronoFunction.LAMBDA && list.size() > 1) {
+            symbols(list.get(1));
+        }else if(fun == CronoFunction.DEFUN && list.size() > 2) {
+            symbols(list.get(2));
+        }else if((fun == CronoFunction.LET || fun == CronoFunction.LETREC) &&
+                 list.size() > 1 && list.get(1) instanceof Cons)
+        {
+            for(CronoType pair : (Cons)list.get(1)) {
+                if(pair instanceof Cons) {
+                    bound(((Cons)pair).car());
+                }
+            }
+        }
+        for(CronoType item : list) {
+            binders(item);
+        }
+    }
+    private void symbols(CronoType node) {
+        if(node instanceof Cons && proper((Cons)node)) {
+            symbols(((Cons)node).toList());
+        }
+    }
+    private void symbols(List<CronoType> nodes) {
+        for(CronoType node : nodes) {
+            bound(node);
+        }
+    }
+    private void bound(CronoType node) {
+        if(node instanceof Symbol) {
+            bound.add((Symbol)node);
+        }
+    }
+    
+    /* The builtin a head symbol refers to, if it can be trusted */
+    private CronoFunction builtin(CronoType head) {
+        if(!(head instanceof Symbol) || bound.contains(head)) {
+            return null;
+        }
+        CronoType value = env.get((Symbol)head);
+        if(!(value instanceof Function)) {
+            return null;
+        }
+        for(CronoFunction fun : CronoFunction.values()) {
+            if(fun.function == value) {
+                return fun;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean proper(Cons c) {
+        if(!(c.iterator().hasNext())) {
+            return false; /*< Nil or T */
+        }
+        CronoType next = c;
+        while(next instanceof Cons && next != Nil.NIL) {
+            next = ((Cons)next).cdr();
+        }
+        return (next == Nil.NIL);
+    }
+    
+    private CronoType optimize(CronoType node) {
+        if(!(node instanceof Cons) || !proper((Cons)node)) {
+            return node; /*< Atoms, quotes, Nil and dotted pairs */
+        }
+        List<CronoType> list = ((Cons)node).toList();
+        CronoType head = list.get(0);
+        CronoFunction fun = builtin(head);
+        if(fun == null) {
+            CronoType lookup = null;
+            if(head instanceof Symbol && !bound.contains(head)) {
+                lookup = env.get((Symbol)head);
+            }
+            if(lookup instanceof Function &&
+               ((Function)lookup).eval != EvalType.FULL)
+            {
+                return node; /*< A struct or unknown form */
+            }
+            return rebuild(node, list, 0);
+        }
+        
+        switch(fun) {
+        case IF:
+        case WHILE:
+        case TRY:
+            return rebuild(node, list, (fun == CronoFunction.TRY) ? 2 : 1);
+        case DEFINE:
+        case LAMBDA:
+            return rebuild(node, list, 2);
+        case DEFUN:
+            return rebuild(node, list, 3);
+        case LET:
+        case LETREC:
+            return let(node, list);
+        default:
+            if(fun.function.eval != EvalType.FULL) {
+                return node;
+            }
+            break;
+        }
+        
+        CronoType result = rebuild(node, list, 1);
+        if(!PURE.contains(fun) || list.size() == 1) {
+            return result;
+        }
+        if(result != node) {
+            list = ((Cons)result).toList();
+        }
+        CronoType[] args = new CronoType[list.size() - 1];
+        for(int i = 0; i < args.length; ++i) {
+            args[i] = list.get(i + 1);
+            if(!(args[i] instanceof CronoPrimitive)) {
+                return result;
+            }
+        }
+        return fold(fun.function, args, result);
+    }
+    
+    /* Optimizes every element of a form from start on */
+    private CronoType rebuild(CronoType node, List<CronoType> list,
+                              int start)
+    {
+        boolean changed = false;
+        List<CronoType> items = new ArrayList<CronoType>(list.size());
+        for(int i = 0; i < list.size(); ++i) {
+            CronoType item = list.get(i);
+            if(i >= start) {
+                item = optimize(item);
+                changed |= (item != list.get(i));
+            }
+            items.add(item);
+        }
+        return changed ? Cons.fromList(items) : node;
+    }
+    
+    /* Optimizes the values of the bindings of a let or letrec, and its body */
+    private CronoType let(CronoType node, List<CronoType> list) {
+        CronoType result = rebuild(node, list, 2);
+        if(list.size() < 2 || !(list.get(1) instanceof Cons) ||
+           !proper((Cons)list.get(1)))
+        {
+            return result;
+        }
+        
+        boolean changed = false;
+        List<CronoType> pairs = new ArrayList<CronoType>();
+        for(CronoType pair : (Cons)list.get(1)) {
+            CronoType opt = pair;
+            if(pair instanceof Cons && proper((Cons)pair)) {
+                opt = rebuild(pair, ((Cons)pair).toList(), 1);
+            }
+            changed |= (opt != pair);
+            pairs.add(opt);
+        }
+        if(!changed) {
+            return result;
+        }
+        List<CronoType> items = ((Cons)result).toList();
+        items.set(1, Cons.fromList(pairs));
+        return Cons.fromList(items);
+    }
+    
+    /**
+     * Applies a pure builtin to literal arguments.
+     * Applications that fail, or whose result is not a literal itself, are
+     * left to be run, so errors are still reported when they are reached.
+     */
+    private CronoType fold(Function fun, CronoType[] args, CronoType form) {
+        if(args.length > fun.arity && !fun.variadic) {
+            return form;
+        }
+        for(int i = 0; i < args.length && i < fun.args.length; ++i) {
+            if(!fun.accepts(i, args[i])) {
+                return form;
+            }
+        }
+        
+        CronoType value;
+        try {
+            if(args.length < fun.arity) {
+                /* Curry it as the engine would, once */
+                List<CronoType> call = new ArrayList<CronoType>();
+                call.add(fun);
+                for(CronoType arg : args) {
+                    call.add(arg);
+                }
+                return v.visit(Cons.fromList(call));
+            }
+            value = fun.run(v, args);
+        }catch(RuntimeException re) {
+            return form;
+        }
+        if(value instanceof CronoPrimitive || value instanceof TruthValue ||
+           value == Nil.NIL)
+        {
+            return value;
+        }
+        return form;
+    }
+}
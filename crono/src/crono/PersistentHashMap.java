@@ -0,0 +1,384 @@
+package crono;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map implemented as a hash array mapped trie.
+ * Every update returns a new map that shares all of its unchanged nodes with
+ * the old one, so a map can be "copied" by simply keeping a reference to it,
+ * and an update only copies the O(log32 n) nodes on the path to the key.
+ * Keys must implement hashCode and equals consistently.
+ */
+public final class PersistentHashMap<K, V>
+    implements Iterable<Map.Entry<K, V>>
+{
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY =
+        new PersistentHashMap<Object, Object>(null, 0);
+    
+    @SuppressWarnings("unchecked") /*< EMPTY holds no keys or values */
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>)EMPTY;
+    }
+    
+    private final Node root;
+    private final int size;
+    
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    @SuppressWarnings("unchecked") /*< Only put stores values */
+    public V get(Object key) {
+        if(root == null) {
+            return null;
+        }
+        Entry e = root.find(key, hash(key), 0);
+        return (e == null) ? null : (V)e.value;
+    }
+    
+    public boolean containsKey(Object key) {
+        return (root != null) && (root.find(key, hash(key), 0) != null);
+    }
+    
+    /**
+     * @return A map with key bound to value; this map is unchanged.
+     */
+    public PersistentHashMap<K, V> put(K key, V value) {
+        Entry e = new Entry(key, value, hash(key));
+        if(root == null) {
+            return new PersistentHashMap<K, V>(new BitmapNode(e, 0), 1);
+        }
+        boolean[] added = {false};
+        Node nroot = root.put(e, 0, added);
+        if(nroot == root) {
+            return this;
+        }
+        return new PersistentHashMap<K, V>(nroot, added[0] ? size + 1 : size);
+    }
+    
+    /**
+     * @return A map without key; this map is unchanged.
+     */
+    public PersistentHashMap<K, V> remove(Object key) {
+        if(root == null) {
+            return this;
+        }
+        int hash = hash(key);
+        Node nroot = root.remove(key, hash, 0);
+        if(nroot == root) {
+            return this;
+        }
+        return new PersistentHashMap<K, V>(nroot, size - 1);
+    }
+    
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<K, V>(root);
+    }
+    
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+    
+    /* Entries are untyped so that nodes can be shared between the maps of
+     * every key and value type; the map casts them back */
+    private static final class Entry implements Map.Entry<Object, Object> {
+        final Object key, value;
+        final int hash;
+        
+        Entry(Object key, Object value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+        
+        boolean matches(Object key, int hash) {
+            return this.hash == hash && this.key.equals(key);
+        }
+        
+        public Object getKey() {
+            return key;
+        }
+        public Object getValue() {
+            return value;
+        }
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+    
+    private static abstract class Node {
+        /* Slots hold either an Entry or a Node */
+        final Object[] array;
+        
+        Node(Object[] array) {
+            this.array = array;
+        }
+        
+        abstract Entry find(Object key, int hash, int shift);
+        abstract Node put(Entry e, int shift, boolean[] added);
+        /* Returns this if key is absent, null if the node becomes empty */
+        abstract Node remove(Object key, int hash, int shift);
+        
+        /* The only entry in this node, if it has no other contents */
+        Entry single() {
+            if(array.length == 1 && array[0] instanceof Entry) {
+                return (Entry)array[0];
+            }
+            return null;
+        }
+    }
+    
+    private static final class BitmapNode extends Node {
+        final int bitmap;
+        
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+        BitmapNode(Entry e, int shift) {
+            this(bit(e.hash, shift), new Object[]{e});
+        }
+        
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+        
+        Entry find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if((bitmap & bit) == 0) {
+                return null;
+            }
+            Object o = array[index(bit)];
+            if(o instanceof Node) {
+                return ((Node)o).find(key, hash, shift + BITS);
+            }
+            Entry e = (Entry)o;
+            return e.matches(key, hash) ? e : null;
+        }
+        
+        Node put(Entry e, int shift, boolean[] added) {
+            int bit = bit(e.hash, shift);
+            int idx = index(bit);
+            if((bitmap & bit) == 0) {
+                Object[] narray = new Object[array.length + 1];
+                System.arraycopy(array, 0, narray, 0, idx);
+                narray[idx] = e;
+                System.arraycopy(array, idx, narray, idx + 1,
+                                 array.length - idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, narray);
+            }
+            
+            Object o = array[idx];
+            Object replacement;
+            if(o instanceof Node) {
+                Node child = ((Node)o).put(e, shift + BITS, added);
+                if(child == o) {
+                    return this;
+                }
+                replacement = child;
+            }else {
+                Entry old = (Entry)o;
+                if(old.matches(e.key, e.hash)) {
+                    if(old.value == e.value) {
+                        return this;
+                    }
+                    replacement = e;
+                }else {
+                    added[0] = true;
+                    replacement = merge(old, e, shift + BITS);
+                }
+            }
+            Object[] narray = array.clone();
+            narray[idx] = replacement;
+            return new BitmapNode(bitmap, narray);
+        }
+        
+        Node remove(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object o = array[idx];
+            Object replacement = null;
+            if(o instanceof Node) {
+                Node child = ((Node)o).remove(key, hash, shift + BITS);
+                if(child == o) {
+                    return this;
+                }
+                if(child != null) {
+                    Entry single = child.single();
+                    replacement = (single != null) ? single : child;
+                }
+            }else if(!((Entry)o).matches(key, hash)) {
+                return this;
+            }
+            
+            if(replacement != null) {
+                Object[] narray = array.clone();
+                narray[idx] = replacement;
+                return new BitmapNode(bitmap, narray);
+            }
+            if(array.length == 1) {
+                return null;
+            }
+            Object[] narray = new Object[array.length - 1];
+            System.arraycopy(array, 0, narray, 0, idx);
+            System.arraycopy(array, idx + 1, narray, idx,
+                             array.length - idx - 1);
+            return new BitmapNode(bitmap & ~bit, narray);
+        }
+        
+        private static Node merge(Entry a, Entry b, int shift) {
+            if(a.hash == b.hash) {
+                return new CollisionNode(a.hash, new Object[]{a, b});
+            }
+            int abit = bit(a.hash, shift), bbit = bit(b.hash, shift);
+            if(abit == bbit) {
+                return new BitmapNode(abit,
+                                      new Object[]{merge(a, b, shift+BITS)});
+            }
+            Object[] array = (abit < bbit) ? new Object[]{a, b} :
+                                              new Object[]{b, a};
+            return new BitmapNode(abit | bbit, array);
+        }
+    }
+    
+    /* Entries whose keys have the same full hash */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+        
+        private int index(Object key) {
+            for(int i = 0; i < array.length; ++i) {
+                if(((Entry)array[i]).key.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        Entry find(Object key, int hash, int shift) {
+            if(hash != this.hash) {
+                return null;
+            }
+            int idx = index(key);
+            return (idx < 0) ? null : (Entry)array[idx];
+        }
+        
+        Node put(Entry e, int shift, boolean[] added) {
+            if(e.hash != hash) {
+                /* Push this node down a level and add e beside it */
+                Node parent = new BitmapNode(bit(hash, shift),
+                                             new Object[]{this});
+                return parent.put(e, shift, added);
+            }
+            int idx = index(e.key);
+            Object[] narray;
+            if(idx < 0) {
+                narray = new Object[array.length + 1];
+                System.arraycopy(array, 0, narray, 0, array.length);
+                narray[array.length] = e;
+                added[0] = true;
+            }else {
+                if(((Entry)array[idx]).value == e.value) {
+                    return this;
+                }
+                narray = array.clone();
+                narray[idx] = e;
+            }
+            return new CollisionNode(hash, narray);
+        }
+        
+        Node remove(Object key, int hash, int shift) {
+            int idx = (hash == this.hash) ? index(key) : -1;
+            if(idx < 0) {
+                return this;
+            }
+            if(array.length == 1) {
+                return null;
+            }
+            Object[] narray = new Object[array.length - 1];
+            System.arraycopy(array, 0, narray, 0, idx);
+            System.arraycopy(array, idx + 1, narray, idx,
+                             array.length - idx - 1);
+            return new CollisionNode(hash, narray);
+        }
+    }
+    
+    private static final class EntryIterator<K, V>
+        implements Iterator<Map.Entry<K, V>>
+    {
+        /* Depth first walk; a trie over 32 bit hashes is at most 8 deep */
+        private final Node[] nodes = new Node[8];
+        private final int[] positions = new int[8];
+        private int depth;
+        private Entry next;
+        
+        EntryIterator(Node root) {
+            depth = -1;
+            if(root != null) {
+                depth = 0;
+                nodes[0] = root;
+                positions[0] = 0;
+            }
+            advance();
+        }
+        
+        private void advance() {
+            next = null;
+            while(depth >= 0) {
+                Node node = nodes[depth];
+                if(positions[depth] >= node.array.length) {
+                    depth--;
+                    continue;
+                }
+                Object o = node.array[positions[depth]++];
+                if(o instanceof Entry) {
+                    next = (Entry)o;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node)o;
+                positions[depth] = 0;
+            }
+        }
+        
+        public boolean hasNext() {
+            return next != null;
+        }
+        @SuppressWarnings("unchecked") /*< See Entry */
+        public Map.Entry<K, V> next() {
+            if(next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry e = next;
+            advance();
+            return (Map.Entry<K, V>)(Map.Entry<?, ?>)e;
+        }
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package crono;
+
+import crono.type.CronoType;
+import crono.type.LambdaFunction;
+import crono.type.TypeId;
+
+/**
+ * A pending application of a lambda in tail position.
+ * Instead of calling the lambda, which would grow the Java stack, the
+ * Interpreter returns a TailCall up to the nearest caller that is not itself
+ * in tail position, which then runs it with resolve.
+ * TailCalls are never visible to Crono code.
+ */
+public class TailCall extends CronoType {
+    public final LambdaFunction fun;
+    public final CronoType[] args;
+    
+    public TailCall(LambdaFunction fun, CronoType[] args) {
+        this.fun = fun;
+        this.args = args;
+    }
+    
+    /**
+     * Runs pending tail calls until a real value is produced.
+     * @param v The visitor to run the calls with.
+     * @param result The result of a function application.
+     * @return The final value of the application.
+     */
+    public static CronoType resolve(Visitor v, CronoType result) {
+        while(result instanceof TailCall) {
+            TailCall call = (TailCall)result;
+            result = call.fun.run(v, call.args);
+        }
+        return result;
+    }
+    
+    public TypeId typeId() {
+        return fun.returntype;
+    }
+    public String toString() {
+        return String.format("<tail call %s>", fun);
+    }
+    public CronoType accept(Visitor v) {
+        return resolve(v, this);
+    }
+}
@@ -0,0 +1,65 @@
+package crono;
+
+import crono.type.Atom;
+import crono.type.CronoType;
+
+/**
+ * Prints the operation trace, AST and environment of an Interpreter.
+ * The options of the interpreter are checked for each event, since they are
+ * turned off while builtins run.
+ */
+public class Tracer extends Instrument {
+    private static final String _indent_level = "  ";
+    
+    protected final Interpreter interp;
+    protected StringBuilder indent;
+    
+    public Tracer(Interpreter interp) {
+        this.interp = interp;
+        this.indent = new StringBuilder();
+    }
+    
+    public void visit(String kind, CronoType node) {
+        if(interp.printAST) {
+            System.out.printf("%sAST: %s\n", indent, kind);
+        }
+        if(interp.trace) {
+            System.out.printf("%sVisiting %s\n", indent, node.repr());
+        }
+    }
+    public void visit(Atom atom) {
+        if(interp.printAST) {
+            visit(String.format("Atom Node -> %s[%s]", atom, atom.typeId()),
+                  atom);
+        }else {
+            visit(null, atom);
+        }
+    }
+    public void result(CronoType result) {
+        if(interp.trace) {
+            System.out.printf("%sResult: %s [%s]\n", indent, result.repr(),
+                              result.typeId());
+        }
+    }
+    public void environment() {
+        if(interp.showEnv) {
+            System.out.printf("%sEnv: %s\n", indent, interp.getEnv());
+        }
+    }
+    
+    public void indent() {
+        indent.append(_indent_level);
+    }
+    public void deindent() {
+        int size = indent.length();
+        if(size < 2) {
+            indent = new StringBuilder();
+        }else {
+            indent.deleteCharAt(size - 1);
+            indent.deleteCharAt(size - 2);
+        }
+    }
+    public void reset() {
+        indent = new StringBuilder();
+    }
+}
@@ -17,7 +17,25 @@ public abstract class Visitor {
     public abstract CronoType visit(Quote quote);
     public abstract void reset();
     
+    /**
+     * Visits a node in tail position: the last form of a lambda body, or the
+     * branch of an if.
+     * The result may be a TailCall, which must be returned unchanged to the
+     * caller of Function.run; Visitors without tail call support simply
+     * visit the node.
+     * @param node The node to visit.
+     * @return The value of the node, or a pending TailCall.
+     */
+    public CronoType tail(CronoType node) {
+        return node.accept(this);
+    }
+    
     public abstract void dprint(String msg, Object... args);
+    /**
+     * @return If dprint messages are printed, so that messages which take
+     *         work to build can be skipped otherwise.
+     */
+    public abstract boolean debugging();
     
     /**
      * Should return a VisitorState that can be used by nodes being visited.
@@ -35,6 +53,14 @@ public abstract class Visitor {
      * @param state The state to restore this visitor to.
      */
     public abstract void setState(VisitorState state);
+    /**
+     * Tells the visitor that a state will not be restored.
+     * Visitors that keep what is needed to restore a state can then let go
+     * of it; restoring a state that has been released may not undo every
+     * change made since it was taken.
+     * @param state A state returned by getState.
+     */
+    public abstract void releaseState(VisitorState state);
     
     public abstract Environment getEnv();
     public abstract void pushEnv(Environment env);
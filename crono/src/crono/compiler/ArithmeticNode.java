@@ -0,0 +1,296 @@
+package crono.compiler;
+
+import crono.CronoFunction;
+import crono.type.CronoFloat;
+import crono.type.CronoInteger;
+import crono.type.CronoType;
+import crono.type.Function;
+import crono.type.Nil;
+import crono.type.TruthValue;
+
+/**
+ * A call to one of the numeric builtins, specialized on the operand types.
+ * The node remembers which combination of operands it has seen (only
+ * integers, only floats, or a mix of the two) and computes that case
+ * directly, without going through Function.run. When the operands stop
+ * matching, the node widens what it accepts; anything other than numbers,
+ * or a head that is no longer the builtin, goes through the general call.
+ * While only integers have been seen, the operands are evaluated with
+ * evalInt, so nested arithmetic and the tests of ifs pass their integers
+ * unboxed. If an operand turns out not to be an integer, the speculation is
+ * dropped: the node widens its state and finishes with the boxed values.
+ */
+public abstract class ArithmeticNode extends Node {
+    /* Operand combinations seen so far; each state accepts those before it */
+    private static final int UNSEEN = 0;
+    private static final int INTS = 1;
+    private static final int FLOATS = 2;
+    private static final int NUMBERS = 3;
+    private static final int GENERIC = 4;
+    
+    public final Function fun;
+    public final CallNode call;
+    private final Node lhs, rhs;
+    private final boolean compares; /*< If the result is T or Nil */
+    private int state;
+    
+    protected ArithmeticNode(Function fun, CallNode call) {
+        super(call.source);
+        this.fun = fun;
+        this.call = call;
+        this.lhs = call.args[0];
+        this.rhs = call.args[1];
+        this.compares = (fun == CronoFunction.LT.function ||
+                         fun == CronoFunction.GT.function);
+        this.state = UNSEEN;
+    }
+    
+    /**
+     * Specializes a call if it applies a numeric builtin to two arguments.
+     * @param fun The value of the head when the call was compiled.
+     * @param call The general call.
+     * @return The specialized node, or null if the call is not numeric.
+     */
+    public static Node create(CronoType fun, CallNode call) {
+        if(call.args.length != 2) {
+            return null;
+        }
+        if(fun == CronoFunction.ADD.function) {
+            return new ArithmeticNode((Function)fun, call) {
+                protected CronoType ints(long a, long b) {
+                    return new CronoInteger(a + b);
+                }
+                protected long longs(long a, long b) {
+                    return a + b;
+                }
+                protected CronoType floats(double a, double b) {
+                    return new CronoFloat(a + b);
+                }
+            };
+        }
+        if(fun == CronoFunction.SUB.function) {
+            return new ArithmeticNode((Function)fun, call) {
+                protected CronoType ints(long a, long b) {
+                    return new CronoInteger(a - b);
+                }
+                protected long longs(long a, long b) {
+                    return a - b;
+                }
+                protected CronoType floats(double a, double b) {
+                    return new CronoFloat(a - b);
+                }
+            };
+        }
+        if(fun == CronoFunction.MUL.function) {
+            return new ArithmeticNode((Function)fun, call) {
+                protected CronoType ints(long a, long b) {
+                    return new CronoInteger(a * b);
+                }
+                protected long longs(long a, long b) {
+                    return a * b;
+                }
+                protected CronoType floats(double a, double b) {
+                    return new CronoFloat(a * b);
+                }
+            };
+        }
+        if(fun == CronoFunction.DIV.function) {
+            return new ArithmeticNode((Function)fun, call) {
+                protected CronoType ints(long a, long b) {
+                    return new CronoInteger(a / b);
+                }
+                protected long longs(long a, long b) {
+                    return a / b;
+                }
+                protected CronoType floats(double a, double b) {
+                    return new CronoFloat(a / b);
+                }
+            };
+        }
+        if(fun == CronoFunction.LT.function) {
+            return new ArithmeticNode((Function)fun, call) {
+                protected CronoType ints(long a, long b) {
+                    return (a < b) ? TruthValue.T : Nil.NIL;
+                }
+                protected boolean holds(long a, long b) {
+                    return a < b;
+                }
+                protected CronoType floats(double a, double b) {
+                    return (a < b) ? TruthValue.T : Nil.NIL;
+                }
+            };
+        }
+        if(fun == CronoFunction.GT.function) {
+            return new ArithmeticNode((Function)fun, call) {
+                protected CronoType ints(long a, long b) {
+                    return (a > b) ? TruthValue.T : Nil.NIL;
+                }
+                protected boolean holds(long a, long b) {
+                    return a > b;
+                }
+                protected CronoType floats(double a, double b) {
+                    return (a > b) ? TruthValue.T : Nil.NIL;
+                }
+            };
+        }
+        return null;
+    }
+    
+    protected abstract CronoType ints(long a, long b);
+    protected abstract CronoType floats(double a, double b);
+    /* Unboxed results of ints, for arithmetic and for comparisons */
+    protected long longs(long a, long b) {
+        return ((CronoInteger)ints(a, b)).value;
+    }
+    protected boolean holds(long a, long b) {
+        return (ints(a, b) != Nil.NIL);
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        if(!applies(interp, frame)) {
+            return call.eval(interp, frame);
+        }
+        if(state != INTS) {
+            return apply(interp, lhs.eval(interp, frame),
+                         rhs.eval(interp, frame));
+        }
+        
+        long a, b;
+        try {
+            a = lhs.evalInt(interp, frame);
+        }catch(UnexpectedValue uv) {
+            return apply(interp, uv.value, rhs.eval(interp, frame));
+        }
+        try {
+            b = rhs.evalInt(interp, frame);
+        }catch(UnexpectedValue uv) {
+            return apply(interp, new CronoInteger(a), uv.value);
+        }
+        return ints(a, b);
+    }
+    
+    public long evalInt(CompilingInterpreter interp, Frame frame)
+        throws UnexpectedValue
+    {
+        if(compares || state != INTS) {
+            return super.evalInt(interp, frame);
+        }
+        if(!applies(interp, frame)) {
+            return unbox(call.eval(interp, frame));
+        }
+        
+        long a, b;
+        try {
+            a = lhs.evalInt(interp, frame);
+        }catch(UnexpectedValue uv) {
+            return unbox(apply(interp, uv.value, rhs.eval(interp, frame)));
+        }
+        try {
+            b = rhs.evalInt(interp, frame);
+        }catch(UnexpectedValue uv) {
+            return unbox(apply(interp, new CronoInteger(a), uv.value));
+        }
+        return longs(a, b);
+    }
+    
+    public boolean test(CompilingInterpreter interp, Frame frame) {
+        if(!compares || state != INTS) {
+            return super.test(interp, frame);
+        }
+        if(!applies(interp, frame)) {
+            return (call.eval(interp, frame) != Nil.NIL);
+        }
+        
+        long a, b;
+        try {
+            a = lhs.evalInt(interp, frame);
+        }catch(UnexpectedValue uv) {
+            return (apply(interp, uv.value, rhs.eval(interp, frame)) !=
+                    Nil.NIL);
+        }
+        try {
+            b = rhs.evalInt(interp, frame);
+        }catch(UnexpectedValue uv) {
+            return (apply(interp, new CronoInteger(a), uv.value) != Nil.NIL);
+        }
+        return holds(a, b);
+    }
+    
+    /**
+     * Checks that the call can still be specialized: the head is still the
+     * builtin, and the operands have so far been numbers.
+     */
+    public boolean applies(CompilingInterpreter interp, Frame frame) {
+        return (state != GENERIC && call.head.eval(interp, frame) == fun);
+    }
+    /**
+     * Applies the builtin to evaluated operands, once applies is true.
+     */
+    public CronoType apply(CompilingInterpreter interp, CronoType a,
+                           CronoType b)
+    {
+        switch(state) {
+        case INTS:
+            if(a instanceof CronoInteger && b instanceof CronoInteger) {
+                return ints(((CronoInteger)a).value, ((CronoInteger)b).value);
+            }
+            break;
+        case FLOATS:
+            if(a instanceof CronoFloat && b instanceof CronoFloat) {
+                return floats(((CronoFloat)a).value, ((CronoFloat)b).value);
+            }
+            break;
+        case NUMBERS:
+            if(number(a) && number(b)) {
+                return numbers(a, b);
+            }
+            break;
+        }
+        
+        state = widen(state, a, b);
+        if(state == GENERIC) {
+            return interp.apply(fun, a, b);
+        }
+        return numbers(a, b);
+    }
+    
+    private static boolean number(CronoType t) {
+        return (t instanceof CronoInteger || t instanceof CronoFloat);
+    }
+    private CronoType numbers(CronoType a, CronoType b) {
+        if(a instanceof CronoInteger && b instanceof CronoInteger) {
+            return ints(((CronoInteger)a).value, ((CronoInteger)b).value);
+        }
+        return floats(toDouble(a), toDouble(b));
+    }
+    private static double toDouble(CronoType t) {
+        if(t instanceof CronoFloat) {
+            return ((CronoFloat)t).value;
+        }
+        return (double)((CronoInteger)t).value;
+    }
+    
+    /**
+     * The least state that accepts both the states seen so far and a, b.
+     */
+    private static int widen(int state, CronoType a, CronoType b) {
+        int seen;
+        if(a instanceof CronoInteger && b instanceof CronoInteger) {
+            seen = INTS;
+        }else if(a instanceof CronoFloat && b instanceof CronoFloat) {
+            seen = FLOATS;
+        }else if(number(a) && number(b)) {
+            seen = NUMBERS;
+        }else {
+            return GENERIC;
+        }
+        if(state == UNSEEN || state == seen) {
+            return seen;
+        }
+        return NUMBERS;
+    }
+    
+    public void tail() {
+        call.tail();
+    }
+}
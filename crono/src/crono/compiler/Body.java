@@ -0,0 +1,47 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+
+/**
+ * The compiled body of a lambda, shared by every Closure made from it.
+ * The body is run as a tree of Nodes until it has been run PROMOTE times;
+ * it is then translated to JVM bytecode by the BytecodeCompiler, so that
+ * the JIT can optimize it like any other Java method. If the translation
+ * fails the body keeps running as Nodes; the debug option reports why.
+ */
+public class Body {
+    public static final int PROMOTE = 1000;
+    
+    public final Node[] nodes;
+    private CompiledBody compiled;
+    private int runs;
+    
+    public Body(Node[] nodes) {
+        this.nodes = nodes;
+    }
+    
+    /**
+     * @return If the body has been translated to bytecode.
+     */
+    public boolean promoted() {
+        return compiled != null;
+    }
+    
+    public CronoType run(CompilingInterpreter interp, Frame frame) {
+        if(compiled != null) {
+            return compiled.eval(interp, frame);
+        }
+        if(runs < PROMOTE && ++runs == PROMOTE) {
+            compiled = BytecodeCompiler.compile(interp, nodes);
+            if(compiled != null) {
+                return compiled.eval(interp, frame);
+            }
+        }
+        
+        CronoType ret = null;
+        for(int i = 0; i < nodes.length; ++i) {
+            ret = nodes[i].eval(interp, frame);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,412 @@
+package crono.compiler;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+import crono.CronoFunction;
+import crono.compiler.ClassFile.Code;
+import crono.compiler.ClassFile.Label;
+
+/**
+ * Translates the Nodes of a lambda body into a JVM class.
+ * Constants, local references, if, while, let, calls and the numeric
+ * builtins are translated to bytecode; integer arithmetic is done inline.
+ * Every other node (defines, lambdas, globals, and the forms run by the
+ * reference interpreter such as try) is called through its eval method, so
+ * any body can be translated. The class is loaded as a hidden class, which
+ * is unloaded along with the body once no closure refers to it.
+ */
+public class BytecodeCompiler {
+    private static final String _failed =
+        "Could not compile a lambda body to bytecode, running it as nodes: "+
+        "%s\n";
+    
+    private static final String PACKAGE = "crono/compiler/";
+    private static final String TYPE = "crono/type/";
+    
+    private static final String NODE = PACKAGE + "Node";
+    private static final String FRAME = PACKAGE + "Frame";
+    private static final String INTERP = PACKAGE + "CompilingInterpreter";
+    private static final String BODY = PACKAGE + "CompiledBody";
+    private static final String CALL = PACKAGE + "CallNode";
+    private static final String ARITH = PACKAGE + "ArithmeticNode";
+    private static final String GUARD = PACKAGE + "GuardNode";
+    private static final String CONSTANT = PACKAGE + "ConstantNode";
+    private static final String CRONOTYPE = TYPE + "CronoType";
+    private static final String FUNCTION = TYPE + "Function";
+    private static final String EVALTYPE = TYPE + "Function$EvalType";
+    private static final String INTEGER = TYPE + "CronoInteger";
+    private static final String NIL = TYPE + "Nil";
+    private static final String TRUTH = TYPE + "TruthValue";
+    
+    private static final String L_NODES = "[L" + NODE + ";";
+    private static final String L_CRONOTYPE = "L" + CRONOTYPE + ";";
+    private static final String L_FRAME = "L" + FRAME + ";";
+    private static final String L_INTERP = "L" + INTERP + ";";
+    private static final String L_FUNCTION = "L" + FUNCTION + ";";
+    private static final String EVAL =
+        "(" + L_INTERP + L_FRAME + ")" + L_CRONOTYPE;
+    
+    /* Locals of the generated eval method */
+    private static final int THIS = 0, INTERPRETER = 1, FRAME_ARG = 2;
+    private static final int NODES = 3;
+    
+    private final ClassFile file;
+    private final Code code;
+    private final List<Node> table; /*< Becomes CompiledBody.nodes */
+    
+    private BytecodeCompiler() {
+        this.file = new ClassFile(PACKAGE + "Compiled", BODY);
+        this.code = new Code(NODES + 1);
+        this.table = new ArrayList<Node>();
+    }
+    
+    /**
+     * Translates a lambda body and loads the resulting class.
+     * Any body should translate, so a failure means a bug here; it is
+     * reported when the interpreter is debugging, and fails an assertion
+     * when assertions are enabled.
+     * @param interp The interpreter the body runs in.
+     * @param body The compiled body of the lambda.
+     * @return An instance of the new class, or null if the body could not
+     *         be translated or loaded.
+     */
+    public static CompiledBody compile(CompilingInterpreter interp,
+                                       Node[] body)
+    {
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        try {
+            byte[] bytes = compiler.generate(body);
+            Class<?> cls = MethodHandles.lookup()
+                .defineHiddenClass(bytes, true).lookupClass();
+            Node[] nodes = compiler.table.toArray(new Node[0]);
+            Object instance = cls.getConstructor(Node[].class)
+                .newInstance((Object)nodes);
+            return (CompiledBody)instance;
+        }catch(Exception e) {
+            return failed(interp, e);
+        }catch(LinkageError le) {
+            return failed(interp, le); /*< Rejected by the verifier */
+        }
+    }
+    private static CompiledBody failed(CompilingInterpreter interp,
+                                       Throwable t)
+    {
+        if(interp.debugging()) {
+            interp.dprint(_failed, t);
+        }
+        assert false : t;
+        return null;
+    }
+    
+    private byte[] generate(Node[] body) {
+        code.aload(THIS);
+        code.op(Code.GETFIELD, file.fieldRef(BODY, "nodes", L_NODES), 0);
+        code.astore(NODES);
+        sequence(body, FRAME_ARG);
+        code.op(Code.ARETURN, -1);
+        code.finish();
+        if(code.size() > 0xffff) {
+            throw new IllegalStateException("Body too large");
+        }
+        file.method(ClassFile.ACC_PUBLIC, "eval", EVAL, code);
+        
+        Code init = new Code(2);
+        init.aload(0);
+        init.aload(1);
+        init.op(Code.INVOKESPECIAL,
+                file.methodRef(BODY, "<init>", "(" + L_NODES + ")V"), -2);
+        init.op(Code.RETURN, 0);
+        init.finish();
+        file.method(ClassFile.ACC_PUBLIC, "<init>", "(" + L_NODES + ")V",
+                    init);
+        return file.toBytes();
+    }
+    
+    /**
+     * Writes code that leaves the value of the last of nodes on the stack.
+     * @param frame The local holding the current frame.
+     */
+    private void sequence(Node[] nodes, int frame) {
+        for(int i = 0; i < nodes.length; ++i) {
+            if(i > 0) {
+                code.op(Code.POP, -1);
+            }
+            emit(nodes[i], frame);
+        }
+    }
+    
+    /**
+     * Writes code that leaves the value of a node on the stack.
+     * @param frame The local holding the current frame.
+     */
+    private void emit(Node node, int frame) {
+        if(node instanceof ConstantNode) {
+            load(node);
+            code.op(Code.CHECKCAST, file.classRef(CONSTANT), 0);
+            code.op(Code.GETFIELD,
+                    file.fieldRef(CONSTANT, "value", L_CRONOTYPE), 0);
+        }else if(node instanceof LocalRefNode) {
+            emitLocal((LocalRefNode)node, frame);
+        }else if(node instanceof GuardNode) {
+            emitGuard((GuardNode)node, frame);
+        }else if(node instanceof IfNode) {
+            emitIf((IfNode)node, frame);
+        }else if(node instanceof WhileNode) {
+            emitWhile((WhileNode)node, frame);
+        }else if(node instanceof LetNode) {
+            emitLet((LetNode)node, frame);
+        }else if(node instanceof ArithmeticNode) {
+            emitArithmetic((ArithmeticNode)node, frame);
+        }else if(node instanceof CallNode) {
+            emitCall((CallNode)node, frame);
+        }else {
+            fallback(node, frame);
+        }
+    }
+    
+    /* Pushes a node from the table */
+    private void load(Node node) {
+        table.add(node);
+        code.aload(NODES);
+        code.push(table.size() - 1);
+        code.op(Code.AALOAD, -1);
+    }
+    private void fallback(Node node, int frame) {
+        load(node);
+        code.aload(INTERPRETER);
+        code.aload(frame);
+        code.op(Code.INVOKEVIRTUAL, file.methodRef(NODE, "eval", EVAL), -2);
+    }
+    private void nil() {
+        code.op(Code.GETSTATIC, file.fieldRef(NIL, "NIL", "L" + NIL + ";"),
+                1);
+    }
+    
+    /* Reads the slot directly; an empty slot is left to the node */
+    private void emitLocal(LocalRefNode node, int frame) {
+        Label done = new Label();
+        code.aload(frame);
+        for(int i = 0; i < node.depth; ++i) {
+            code.op(Code.GETFIELD, file.fieldRef(FRAME, "parent", L_FRAME),
+                    0);
+        }
+        code.op(Code.GETFIELD,
+                file.fieldRef(FRAME, "slots", "[" + L_CRONOTYPE), 0);
+        code.push(node.slot);
+        code.op(Code.AALOAD, -1);
+        code.op(Code.DUP, 1);
+        code.jump(Code.IFNONNULL, done, -1);
+        code.op(Code.POP, -1);
+        fallback(node, frame);
+        code.mark(done);
+    }
+    
+    /* The special form is inlined behind the check of its head; a head
+     * that was redefined goes through the node */
+    private void emitGuard(GuardNode node, int frame) {
+        Label slow = new Label(), done = new Label();
+        load(node);
+        code.op(Code.CHECKCAST, file.classRef(GUARD), 0);
+        code.aload(INTERPRETER);
+        code.aload(frame);
+        code.op(Code.INVOKEVIRTUAL,
+                file.methodRef(GUARD, "applies",
+                               "(" + L_INTERP + L_FRAME + ")Z"), -2);
+        code.jump(Code.IFEQ, slow, -1);
+        emit(node.special, frame);
+        code.jump(Code.GOTO, done, 0);
+        code.depth--;
+        
+        code.mark(slow);
+        fallback(node, frame);
+        code.mark(done);
+    }
+    
+    private void emitIf(IfNode node, int frame) {
+        Label otherwise = new Label(), done = new Label();
+        emit(node.test, frame);
+        nil();
+        code.jump(Code.IF_ACMPEQ, otherwise, -2);
+        emit(node.then, frame);
+        code.jump(Code.GOTO, done, 0);
+        code.depth--;
+        code.mark(otherwise);
+        emit(node.otherwise, frame);
+        code.mark(done);
+    }
+    
+    private void emitWhile(WhileNode node, int frame) {
+        Label loop = new Label(), done = new Label();
+        int result = code.local();
+        nil();
+        code.astore(result);
+        code.mark(loop);
+        emit(node.test, frame);
+        nil();
+        code.jump(Code.IF_ACMPEQ, done, -2);
+        emit(node.body, frame);
+        code.astore(result);
+        code.jump(Code.GOTO, loop, 0);
+        code.mark(done);
+        code.aload(result);
+    }
+    
+    private void emitLet(LetNode node, int frame) {
+        int inner = code.local();
+        code.op(Code.NEW, file.classRef(FRAME), 1);
+        code.op(Code.DUP, 1);
+        code.aload(frame);
+        code.push(node.scope.size());
+        code.op(Code.INVOKESPECIAL,
+                file.methodRef(FRAME, "<init>", "(" + L_FRAME + "I)V"), -3);
+        code.astore(inner);
+        for(int i = 0; i < node.values.length; ++i) {
+            code.aload(inner);
+            code.op(Code.GETFIELD,
+                    file.fieldRef(FRAME, "slots", "[" + L_CRONOTYPE), 0);
+            code.push(i);
+            emit(node.values[i], node.recursive ? inner : frame);
+            code.op(Code.AASTORE, -3);
+        }
+        sequence(node.body, inner);
+    }
+    
+    private void emitCall(CallNode node, int frame) {
+        Label full = new Label(), done = new Label();
+        int call = code.local(), fun = code.local();
+        load(node);
+        code.op(Code.CHECKCAST, file.classRef(CALL), 0);
+        code.astore(call);
+        
+        code.aload(call);
+        emit(node.head, frame);
+        code.op(Code.INVOKEVIRTUAL,
+                file.methodRef(CALL, "function",
+                               "(" + L_CRONOTYPE + ")" + L_FUNCTION), -1);
+        code.astore(fun);
+        
+        code.aload(fun);
+        code.op(Code.GETFIELD,
+                file.fieldRef(FUNCTION, "eval", "L" + EVALTYPE + ";"), 0);
+        code.op(Code.GETSTATIC,
+                file.fieldRef(EVALTYPE, "FULL", "L" + EVALTYPE + ";"), 1);
+        code.jump(Code.IF_ACMPEQ, full, -2);
+        code.aload(call);
+        code.aload(INTERPRETER);
+        code.aload(frame);
+        code.aload(fun);
+        code.op(Code.INVOKEVIRTUAL,
+                file.methodRef(CALL, "interpret", "(" + L_INTERP + L_FRAME +
+                               L_FUNCTION + ")" + L_CRONOTYPE), -3);
+        code.jump(Code.GOTO, done, 0);
+        code.depth--;
+        
+        code.mark(full);
+        code.aload(call);
+        code.aload(INTERPRETER);
+        code.aload(fun);
+        code.push(node.args.length);
+        code.op(Code.ANEWARRAY, file.classRef(CRONOTYPE), 0);
+        for(int i = 0; i < node.args.length; ++i) {
+            code.op(Code.DUP, 1);
+            code.push(i);
+            emit(node.args[i], frame);
+            code.op(Code.AASTORE, -3);
+        }
+        code.op(Code.INVOKEVIRTUAL,
+                file.methodRef(CALL, "apply", "(" + L_INTERP + L_FUNCTION +
+                               "[" + L_CRONOTYPE + ")" + L_CRONOTYPE), -3);
+        code.mark(done);
+    }
+    
+    /* Integer operands are computed inline; anything else goes through the
+     * node, which keeps track of the operands it has seen */
+    private void emitArithmetic(ArithmeticNode node, int frame) {
+        Label mixed = new Label(), slow = new Label(), done = new Label();
+        int arith = code.local(), lhs = code.local(), rhs = code.local();
+        load(node);
+        code.op(Code.CHECKCAST, file.classRef(ARITH), 0);
+        code.astore(arith);
+        
+        code.aload(arith);
+        code.aload(INTERPRETER);
+        code.aload(frame);
+        code.op(Code.INVOKEVIRTUAL,
+                file.methodRef(ARITH, "applies",
+                               "(" + L_INTERP + L_FRAME + ")Z"), -2);
+        code.jump(Code.IFEQ, slow, -1);
+        emit(node.call.args[0], frame);
+        code.astore(lhs);
+        emit(node.call.args[1], frame);
+        code.astore(rhs);
+        code.aload(lhs);
+        code.op(Code.INSTANCEOF, file.classRef(INTEGER), 0);
+        code.jump(Code.IFEQ, mixed, -1);
+        code.aload(rhs);
+        code.op(Code.INSTANCEOF, file.classRef(INTEGER), 0);
+        code.jump(Code.IFEQ, mixed, -1);
+        ints(node, lhs, rhs, done);
+        code.jump(Code.GOTO, done, 0);
+        code.depth--;
+        
+        code.mark(mixed);
+        code.aload(arith);
+        code.aload(INTERPRETER);
+        code.aload(lhs);
+        code.aload(rhs);
+        code.op(Code.INVOKEVIRTUAL,
+                file.methodRef(ARITH, "apply", "(" + L_INTERP + L_CRONOTYPE +
+                               L_CRONOTYPE + ")" + L_CRONOTYPE), -3);
+        code.jump(Code.GOTO, done, 0);
+        code.depth--;
+        
+        code.mark(slow);
+        fallback(node, frame);
+        code.mark(done);
+    }
+    private void ints(ArithmeticNode node, int lhs, int rhs, Label done) {
+        int op = 0;
+        if(node.fun == CronoFunction.ADD.function) {
+            op = Code.LADD;
+        }else if(node.fun == CronoFunction.SUB.function) {
+            op = Code.LSUB;
+        }else if(node.fun == CronoFunction.MUL.function) {
+            op = Code.LMUL;
+        }else if(node.fun == CronoFunction.DIV.function) {
+            op = Code.LDIV;
+        }
+        
+        if(op != 0) {
+            code.op(Code.NEW, file.classRef(INTEGER), 1);
+            code.op(Code.DUP, 1);
+        }
+        value(lhs);
+        value(rhs);
+        if(op != 0) {
+            code.op(op, -2);
+            code.op(Code.INVOKESPECIAL,
+                    file.methodRef(INTEGER, "<init>", "(J)V"), -3);
+            return;
+        }
+        
+        /* LT or GT */
+        Label no = new Label();
+        code.op(Code.LCMP, -3);
+        boolean lt = (node.fun == CronoFunction.LT.function);
+        code.jump(lt ? Code.IFGE : Code.IFLE, no, -1);
+        code.op(Code.GETSTATIC,
+                file.fieldRef(TRUTH, "T", "L" + TRUTH + ";"), 1);
+        code.jump(Code.GOTO, done, 0);
+        code.depth--;
+        code.mark(no);
+        nil();
+    }
+    /* Pushes the long value of a local known to hold a CronoInteger */
+    private void value(int local) {
+        code.aload(local);
+        code.op(Code.CHECKCAST, file.classRef(INTEGER), 0);
+        code.op(Code.GETFIELD, file.fieldRef(INTEGER, "value", "J"), 1);
+    }
+}
@@ -0,0 +1,179 @@
+package crono.compiler;
+
+import crono.InterpreterException;
+import crono.TailCall;
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.Function;
+import crono.type.LambdaFunction;
+import crono.type.PartialApplication;
+
+/**
+ * A function application.
+ * The head and the arguments are compiled ahead of time; the function itself
+ * is only known when the node runs. Functions that do not fully evaluate
+ * their arguments are handed back to the reference interpreter.
+ * In tail position, saturated lambda applications are returned as TailCalls.
+ * Builtins given exactly as many arguments as they take, up to three, are
+ * applied through their fixed-arity entry points, without an argument array.
+ * Each call site caches how it dispatched the last few functions it saw, so
+ * a callee seen before is recognized by an identity check instead of going
+ * through the checks again. Lambdas are recognized by their body, which
+ * every closure and curried copy of the same lambda shares, and partial
+ * applications by the builtin they curry; either way along with the arity,
+ * since currying changes it. Once the cache is full, the oldest entry is
+ * replaced.
+ */
+public class CallNode extends Node {
+    private static final String _not_function =
+        "Invalid Function Application: %s is not a function in %s";
+    
+    /* How a function is applied at this call site */
+    private static final int INTERPRET = 0; /*< Not fully evaluated */
+    private static final int FIXED = 1; /*< Builtin with exact arguments */
+    private static final int LAMBDA = 2; /*< Lambda with exact arguments */
+    private static final int GENERAL = 3; /*< Curried, variadic, or wrong */
+    private static final int WAYS = 4; /*< Callees cached per call site */
+    
+    public final Node head;
+    public final Node[] args;
+    public final Scope scope;
+    private boolean tail;
+    private final Object[] callees; /*< See key */
+    private final int[] arities;
+    private final int[] kinds;
+    private int cached;
+    private int oldest; /*< The entry to replace once all are used */
+    
+    public CallNode(Cons source, Node head, Node[] args, Scope scope) {
+        super(source);
+        this.head = head;
+        this.args = args;
+        this.scope = scope;
+        this.callees = new Object[WAYS];
+        this.arities = new int[WAYS];
+        this.kinds = new int[WAYS];
+        this.cached = 0;
+        this.oldest = 0;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        Function fun = function(head.eval(interp, frame));
+        int kind = dispatch(fun);
+        if(kind == INTERPRET) {
+            return interpret(interp, frame, fun);
+        }
+        
+        if(kind == FIXED) {
+            switch(args.length) {
+            case 0:
+                return interp.apply(fun);
+            case 1:
+                return interp.apply(fun, args[0].eval(interp, frame));
+            case 2: {
+                CronoType first = args[0].eval(interp, frame);
+                CronoType second = args[1].eval(interp, frame);
+                return interp.apply(fun, first, second);
+            }
+            case 3: {
+                CronoType first = args[0].eval(interp, frame);
+                CronoType second = args[1].eval(interp, frame);
+                CronoType third = args[2].eval(interp, frame);
+                return interp.apply(fun, first, second, third);
+            }
+            }
+        }
+        
+        CronoType[] argv = new CronoType[args.length];
+        for(int i = 0; i < argv.length; ++i) {
+            argv[i] = args[i].eval(interp, frame);
+        }
+        return apply(interp, fun, argv, kind);
+    }
+    
+    /* What the cache recognizes a function by, with its arity */
+    private static Object key(Function fun) {
+        if(fun instanceof LambdaFunction) {
+            return ((LambdaFunction)fun).body;
+        }
+        if(fun instanceof PartialApplication) {
+            return ((PartialApplication)fun).target;
+        }
+        return fun;
+    }
+    
+    /* Finds how to apply a function, from the cache if it was seen before */
+    private int dispatch(Function fun) {
+        Object callee = key(fun);
+        for(int i = 0; i < cached; ++i) {
+            if(callees[i] == callee && arities[i] == fun.arity) {
+                return kinds[i];
+            }
+        }
+        
+        int kind = GENERAL;
+        if(fun.eval != Function.EvalType.FULL) {
+            kind = INTERPRET;
+        }else if(args.length == fun.arity) {
+            if(fun instanceof LambdaFunction) {
+                kind = LAMBDA;
+            }else if(args.length <= 3) {
+                kind = FIXED;
+            }
+        }
+        int entry = cached;
+        if(cached < WAYS) {
+            cached++;
+        }else {
+            entry = oldest;
+            oldest = (oldest + 1) % WAYS;
+        }
+        callees[entry] = callee;
+        arities[entry] = fun.arity;
+        kinds[entry] = kind;
+        return kind;
+    }
+    
+    /* The steps of eval, for code generated by the BytecodeCompiler */
+    
+    /**
+     * Checks that the head of this call evaluated to a function.
+     */
+    public Function function(CronoType value) {
+        if(!(value instanceof Function)) {
+            throw new InterpreterException(_not_function, value, source);
+        }
+        return (Function)value;
+    }
+    /**
+     * Runs a function that does not fully evaluate its arguments.
+     */
+    public CronoType interpret(CompilingInterpreter interp, Frame frame,
+                               Function fun)
+    {
+        return interp.interpret(fun, (Cons)source, scope, frame);
+    }
+    /**
+     * Applies a function that fully evaluates its arguments.
+     */
+    public CronoType apply(CompilingInterpreter interp, Function fun,
+                           CronoType[] argv)
+    {
+        return apply(interp, fun, argv, dispatch(fun));
+    }
+    private CronoType apply(CompilingInterpreter interp, Function fun,
+                            CronoType[] argv, int kind)
+    {
+        if(kind != LAMBDA) {
+            return interp.apply(fun, argv);
+        }
+        if(tail) {
+            return new TailCall((LambdaFunction)fun, argv);
+        }
+        return TailCall.resolve(interp, fun.run(interp, argv));
+    }
+    
+    public void tail() {
+        tail = true;
+    }
+}
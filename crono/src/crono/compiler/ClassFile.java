@@ -0,0 +1,303 @@
+package crono.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the bytes of a JVM class file.
+ * Only what the BytecodeCompiler needs is supported: a class with public
+ * methods, no fields, and code that refers to other classes through the
+ * constant pool. The class file version predates stack map frames, so the
+ * JVM infers the types at branch targets itself.
+ */
+public class ClassFile {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49; /*< Java 5, no StackMapTable */
+    
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+    
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_Fieldref = 9;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_NameAndType = 12;
+    
+    private final String name, superName;
+    private final ByteArrayOutputStream poolBytes;
+    private final DataOutputStream pool;
+    private final Map<String, Integer> entries;
+    private int poolSize;
+    private final List<byte[]> methods;
+    
+    /**
+     * @param name The internal name of the class, such as "crono/Foo".
+     * @param superName The internal name of its superclass.
+     */
+    public ClassFile(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+        this.poolBytes = new ByteArrayOutputStream();
+        this.pool = new DataOutputStream(poolBytes);
+        this.entries = new HashMap<String, Integer>();
+        this.poolSize = 1;
+        this.methods = new ArrayList<byte[]>();
+    }
+    
+    private int utf8(String text) {
+        Integer index = entries.get("U" + text);
+        if(index == null) {
+            index = poolSize++;
+            entries.put("U" + text, index);
+            try {
+                pool.writeByte(CONSTANT_Utf8);
+                pool.writeUTF(text);
+            }catch(IOException ioe) {
+                throw new IllegalStateException(ioe);
+            }
+        }
+        return index;
+    }
+    private int entry(String key, int tag, int first, int second) {
+        Integer index = entries.get(key);
+        if(index == null) {
+            index = poolSize++;
+            entries.put(key, index);
+            try {
+                pool.writeByte(tag);
+                pool.writeShort(first);
+                if(second >= 0) {
+                    pool.writeShort(second);
+                }
+            }catch(IOException ioe) {
+                throw new IllegalStateException(ioe);
+            }
+        }
+        return index;
+    }
+    
+    public int classRef(String cls) {
+        return entry("C" + cls, CONSTANT_Class, utf8(cls), -1);
+    }
+    private int nameAndType(String member, String desc) {
+        return entry("N" + member + " " + desc, CONSTANT_NameAndType,
+                     utf8(member), utf8(desc));
+    }
+    public int fieldRef(String owner, String member, String desc) {
+        return entry("F" + owner + "." + member + " " + desc,
+                     CONSTANT_Fieldref, classRef(owner),
+                     nameAndType(member, desc));
+    }
+    public int methodRef(String owner, String member, String desc) {
+        return entry("M" + owner + "." + member + " " + desc,
+                     CONSTANT_Methodref, classRef(owner),
+                     nameAndType(member, desc));
+    }
+    
+    /**
+     * Adds a method whose code has been fully assembled.
+     */
+    public void method(int access, String member, String desc, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] ops = code.bytes.toByteArray();
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(member));
+            out.writeShort(utf8(desc));
+            out.writeShort(1); /*< The Code attribute */
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + ops.length);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(ops.length);
+            out.write(ops);
+            out.writeShort(0); /*< No exception handlers */
+            out.writeShort(0); /*< No attributes */
+        }catch(IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        methods.add(bytes.toByteArray());
+    }
+    
+    public byte[] toBytes() {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0); /*< Interfaces */
+            out.writeShort(0); /*< Fields */
+            out.writeShort(methods.size());
+            for(byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); /*< Attributes */
+        }catch(IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * The code of one method.
+     * Each instruction is given the change it makes to the operand stack, so
+     * that the maximum depth can be recorded as the code is written. Code
+     * that follows an unconditional jump has to set the depth it starts at.
+     */
+    public static class Code {
+        public static final int ACONST_NULL = 0x01;
+        public static final int BIPUSH = 0x10;
+        public static final int SIPUSH = 0x11;
+        public static final int ALOAD = 0x19;
+        public static final int AALOAD = 0x32;
+        public static final int ASTORE = 0x3a;
+        public static final int AASTORE = 0x53;
+        public static final int POP = 0x57;
+        public static final int DUP = 0x59;
+        public static final int LADD = 0x61;
+        public static final int LSUB = 0x65;
+        public static final int LMUL = 0x69;
+        public static final int LDIV = 0x6d;
+        public static final int LCMP = 0x94;
+        public static final int IFEQ = 0x99;
+        public static final int IFNE = 0x9a;
+        public static final int IFGE = 0x9c;
+        public static final int IFLE = 0x9e;
+        public static final int IF_ACMPEQ = 0xa5;
+        public static final int IF_ACMPNE = 0xa6;
+        public static final int GOTO = 0xa7;
+        public static final int ARETURN = 0xb0;
+        public static final int RETURN = 0xb1;
+        public static final int GETSTATIC = 0xb2;
+        public static final int GETFIELD = 0xb4;
+        public static final int INVOKEVIRTUAL = 0xb6;
+        public static final int INVOKESPECIAL = 0xb7;
+        public static final int NEW = 0xbb;
+        public static final int ANEWARRAY = 0xbd;
+        public static final int CHECKCAST = 0xc0;
+        public static final int INSTANCEOF = 0xc1;
+        public static final int IFNONNULL = 0xc7;
+        
+        private final ByteArrayOutputStream bytes;
+        private final List<Label> labels;
+        public int depth, maxStack, maxLocals;
+        
+        public Code(int locals) {
+            this.bytes = new ByteArrayOutputStream();
+            this.labels = new ArrayList<Label>();
+            this.maxLocals = locals;
+        }
+        
+        public int size() {
+            return bytes.size();
+        }
+        
+        private void stack(int change) {
+            depth += change;
+            maxStack = Math.max(maxStack, depth);
+        }
+        private void u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+        
+        /**
+         * An instruction with no operands.
+         */
+        public void op(int opcode, int change) {
+            bytes.write(opcode);
+            stack(change);
+        }
+        /**
+         * An instruction with a constant pool index as its operand.
+         */
+        public void op(int opcode, int index, int change) {
+            bytes.write(opcode);
+            u2(index);
+            stack(change);
+        }
+        
+        public void push(int value) {
+            if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                bytes.write(BIPUSH);
+                bytes.write(value);
+            }else {
+                bytes.write(SIPUSH);
+                u2(value);
+            }
+            stack(1);
+        }
+        public void aload(int local) {
+            bytes.write(ALOAD);
+            bytes.write(local);
+            stack(1);
+        }
+        public void astore(int local) {
+            bytes.write(ASTORE);
+            bytes.write(local);
+            stack(-1);
+        }
+        
+        /**
+         * Allocates a local variable slot.
+         */
+        public int local() {
+            if(maxLocals > 255) {
+                throw new IllegalStateException("Too many locals");
+            }
+            return maxLocals++;
+        }
+        
+        public void jump(int opcode, Label target, int change) {
+            target.sites.add(bytes.size());
+            bytes.write(opcode);
+            u2(0);
+            stack(change);
+            if(!labels.contains(target)) {
+                labels.add(target);
+            }
+        }
+        public void mark(Label label) {
+            label.position = bytes.size();
+        }
+        
+        /**
+         * Fills in the offsets of every jump.
+         */
+        public void finish() {
+            byte[] code = bytes.toByteArray();
+            for(Label label : labels) {
+                for(int site : label.sites) {
+                    int offset = label.position - site;
+                    if(offset != (short)offset) {
+                        throw new IllegalStateException("Jump too far");
+                    }
+                    code[site + 1] = (byte)(offset >> 8);
+                    code[site + 2] = (byte)offset;
+                }
+            }
+            bytes.reset();
+            bytes.write(code, 0, code.length);
+        }
+    }
+    
+    public static class Label {
+        private final List<Integer> sites = new ArrayList<Integer>();
+        private int position = -1;
+    }
+}
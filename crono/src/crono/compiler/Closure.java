@@ -0,0 +1,62 @@
+package crono.compiler;
+
+import crono.Environment;
+import crono.Visitor;
+import crono.type.CronoType;
+import crono.type.LambdaFunction;
+import crono.type.Symbol;
+
+/**
+ * A LambdaFunction whose body has been compiled.
+ * When run by a CompilingInterpreter the compiled body is run in a new Frame
+ * whose parent is the frame the closure was created in; any other Visitor
+ * falls back to visiting the AST.
+ */
+public class Closure extends LambdaFunction {
+    public final Body code;
+    public final Scope scope;
+    public final Frame frame;
+    /* Arguments already supplied by currying; these fill the first slots */
+    private final CronoType[] bound;
+    
+    public Closure(Symbol[] args, CronoType[] body, Environment env,
+                   Body code, Scope scope, Frame frame)
+    {
+        this(args, body, env, code, scope, frame, new CronoType[0]);
+    }
+    private Closure(Symbol[] args, CronoType[] body, Environment env,
+                    Body code, Scope scope, Frame frame, CronoType[] bound)
+    {
+        super(args, body, env);
+        this.code = code;
+        this.scope = scope;
+        this.frame = frame;
+        this.bound = bound;
+    }
+    
+    public LambdaFunction curry(CronoType[] args) {
+        CronoType[] nbound = new CronoType[bound.length + args.length];
+        System.arraycopy(bound, 0, nbound, 0, bound.length);
+        System.arraycopy(args, 0, nbound, bound.length, args.length);
+        return new Closure(remaining(args.length), body, environment, code,
+                           scope, frame, nbound);
+    }
+    
+    public CronoType run(Visitor v, CronoType[] args) {
+        if(!(v instanceof CompilingInterpreter)) {
+            return super.run(v, args);
+        }
+        CompilingInterpreter interp = (CompilingInterpreter)v;
+        
+        Frame callframe = new Frame(frame, scope.size());
+        System.arraycopy(bound, 0, callframe.slots, 0, bound.length);
+        System.arraycopy(args, 0, callframe.slots, bound.length, args.length);
+        
+        interp.pushEnv(environment);
+        try {
+            return code.run(interp, callframe);
+        }finally {
+            interp.popEnv();
+        }
+    }
+}
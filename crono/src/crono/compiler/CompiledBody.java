@@ -0,0 +1,24 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+
+/**
+ * The superclass of the classes made by the BytecodeCompiler.
+ * Generated code runs the nodes it supports directly, and calls back into
+ * the nodes array for the rest.
+ */
+public abstract class CompiledBody {
+    protected final Node[] nodes; /*< Nodes the generated code refers to */
+    
+    protected CompiledBody(Node[] nodes) {
+        this.nodes = nodes;
+    }
+    
+    /**
+     * Runs the body of a lambda.
+     * @param interp The interpreter the body is running in.
+     * @param frame The frame of the call.
+     * @return The value of the last form of the body.
+     */
+    public abstract CronoType eval(CompilingInterpreter interp, Frame frame);
+}
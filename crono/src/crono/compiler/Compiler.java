@@ -0,0 +1,338 @@
+package crono.compiler;
+
+import java.util.List;
+
+import crono.CronoFunction;
+import crono.type.Atom;
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.CronoTypeId;
+import crono.type.Function;
+import crono.type.Nil;
+import crono.type.Quote;
+import crono.type.Symbol;
+
+/**
+ * Turns parsed Crono code into trees of executable Nodes.
+ * Special forms are recognized when their head symbol is not lexically bound
+ * and refers to the builtin at the time the form is compiled; the head may be
+ * redefined later, so their nodes are guarded by a GuardNode.
+ */
+public class Compiler {
+    private final CompilingInterpreter interp;
+    
+    public Compiler(CompilingInterpreter interp) {
+        this.interp = interp;
+    }
+    
+    /**
+     * Compiles a top-level form.
+     * @param node The AST to compile.
+     * @return The executable node.
+     */
+    public Node compile(CronoType node) {
+        return compile(node, null);
+    }
+    
+    protected Node compile(CronoType node, Scope scope) {
+        if(node instanceof Quote) {
+            return new ConstantNode(node, ((Quote)node).node);
+        }
+        if(node instanceof Cons) {
+            return compileCons((Cons)node, scope);
+        }
+        if(node instanceof Symbol) {
+            Node local = resolve((Symbol)node, scope);
+            if(local != null) {
+                return local;
+            }
+            return new GlobalRefNode((Symbol)node);
+        }
+        if(node instanceof CronoTypeId && !((CronoTypeId)node).complete()) {
+            return new GlobalRefNode((Atom)node);
+        }
+        return new ConstantNode(node);
+    }
+    
+    protected Node[] compile(CronoType[] nodes, Scope scope) {
+        Node[] code = new Node[nodes.length];
+        for(int i = 0; i < nodes.length; ++i) {
+            code[i] = compile(nodes[i], scope);
+        }
+        return code;
+    }
+    
+    /**
+     * Resolves a symbol to the frame depth and slot of its nearest binding.
+     * Every scope between the reference and the binding is marked as
+     * capturing its enclosing frame.
+     * @return A LocalRefNode, or null if the symbol is not lexically bound.
+     */
+    private Node resolve(Symbol sym, Scope scope) {
+        Scope inner = scope;
+        int depth = 0;
+        while(scope != null) {
+            int slot = scope.slot(sym);
+            if(slot >= 0) {
+                for(; inner != scope; inner = inner.parent) {
+                    inner.capture();
+                }
+                return new LocalRefNode(sym, depth, slot,
+                                        scope.declared(slot));
+            }
+            scope = scope.parent;
+            depth++;
+        }
+        return null;
+    }
+    
+    /**
+     * Compiles a lambda or let body.
+     * Symbols defined anywhere in the body, other than inside nested lambdas
+     * and lets, are given slots first so that every reference to them in the
+     * body is resolved to the same slot.
+     */
+    protected Node[] compileBody(CronoType[] body, Scope scope) {
+        for(int i = 0; i < body.length; ++i) {
+            hoist(body[i], scope);
+        }
+        return compile(body, scope);
+    }
+    /**
+     * Compiles the body of a lambda, whose last form is in tail position.
+     */
+    protected Node[] compileLambdaBody(CronoType[] body, Scope scope) {
+        Node[] code = compileBody(body, scope);
+        code[code.length - 1].tail();
+        return code;
+    }
+    private void hoist(CronoType node, Scope scope) {
+        if(!(node instanceof Cons) || node == Nil.NIL) {
+            return;
+        }
+        List<CronoType> list = ((Cons)node).toList();
+        CronoType head = list.get(0);
+        if(head instanceof Symbol && resolve((Symbol)head, scope) == null) {
+            CronoType value = interp.getEnv().get((Symbol)head);
+            if(value == CronoFunction.DEFINE.function ||
+               value == CronoFunction.DEFUN.function)
+            {
+                if(list.size() > 1 && list.get(1) instanceof Symbol) {
+                    scope.declare((Symbol)list.get(1));
+                }
+            }
+            if(value instanceof Function &&
+               ((Function)value).eval != Function.EvalType.FULL &&
+               value != CronoFunction.IF.function &&
+               value != CronoFunction.WHILE.function)
+            {
+                return; /*< Don't look inside other binding forms */
+            }
+        }
+        for(CronoType item : list) {
+            hoist(item, scope);
+        }
+    }
+    
+    /**
+     * Resolves every symbol in a form that is left to the interpreter, which
+     * may look any of them up, so that closures keep the frames they are in.
+     */
+    private void mention(CronoType node, Scope scope) {
+        if(node instanceof Symbol) {
+            resolve((Symbol)node, scope);
+        }else if(node instanceof Quote) {
+            mention(((Quote)node).node, scope);
+        }else if(node instanceof Cons) {
+            for(CronoType item : (Cons)node) {
+                mention(item, scope);
+            }
+        }
+    }
+    
+    private Node compileCons(Cons c, Scope scope) {
+        if(!(c.iterator().hasNext())) {
+            return new ConstantNode(c); /*< Nil or T */
+        }
+        
+        List<CronoType> list = c.toList();
+        CronoType head = list.get(0);
+        CronoType[] args = new CronoType[list.size() - 1];
+        for(int i = 0; i < args.length; ++i) {
+            args[i] = list.get(i + 1);
+        }
+        
+        CronoType value = null;
+        if(head instanceof Symbol && resolve((Symbol)head, scope) == null) {
+            value = interp.getEnv().get((Symbol)head);
+            if(value instanceof Function) {
+                if(((Function)value).eval == Function.EvalType.NONE) {
+                    unquote(args);
+                }
+                Node special = compileSpecial(c, (Function)value, args, scope);
+                if(special != null) {
+                    return new GuardNode(c, compile(head, scope),
+                                         (Function)value, special, scope);
+                }
+                if(((Function)value).eval != Function.EvalType.FULL) {
+                    mention(c, scope);
+                    return new InterpretedNode(c, (Function)value, scope);
+                }
+            }
+        }
+        
+        CallNode call = new CallNode(c, compile(head, scope),
+                                     compile(args, scope), scope);
+        Node arith = ArithmeticNode.create(value, call);
+        return (arith == null) ? call : arith;
+    }
+    
+    /**
+     * Compiles the special forms that have dedicated nodes.
+     * @return The node, or null if fun is not a special form or the form is
+     *         malformed; malformed forms are left to the interpreter so that
+     *         errors are reported the same way.
+     */
+    private Node compileSpecial(Cons c, Function fun, CronoType[] args,
+                                Scope scope)
+    {
+        if(fun == CronoFunction.IF.function) {
+            if(args.length != 3) {
+                return null;
+            }
+            return new IfNode(c, compile(args[0], scope),
+                              compile(args[1], scope),
+                              compile(args[2], scope));
+        }
+        if(fun == CronoFunction.WHILE.function) {
+            if(args.length != 2) {
+                return null;
+            }
+            return new WhileNode(c, compile(args[0], scope),
+                                 compile(args[1], scope));
+        }
+        if(fun == CronoFunction.DEFINE.function) {
+            if(args.length != 2 || !(args[0] instanceof Symbol)) {
+                return null;
+            }
+            Symbol sym = (Symbol)args[0];
+            if(scope == null) {
+                return new DefineNode(c, sym, compile(args[1], scope));
+            }
+            Node value = compile(args[1], scope);
+            return new LocalDefineNode(c, sym, scope.declare(sym), value);
+        }
+        if(fun == CronoFunction.LAMBDA.function) {
+            if(args.length < 2) {
+                return null;
+            }
+            Symbol[] arglist = arglist(args[0]);
+            if(arglist == null) {
+                return null;
+            }
+            CronoType[] body = rest(args, 1);
+            Scope inner = new Scope(scope, arglist);
+            Node[] code = compileLambdaBody(body, inner);
+            return new LambdaNode(c, arglist, body, code, inner);
+        }
+        if(fun == CronoFunction.DEFUN.function) {
+            if(args.length < 3 || !(args[0] instanceof Symbol)) {
+                return null;
+            }
+            Symbol[] arglist = arglist(args[1]);
+            if(arglist == null) {
+                return null;
+            }
+            Symbol name = (Symbol)args[0];
+            CronoType[] body = rest(args, 2);
+            if(scope == null) {
+                Scope inner = new Scope(scope, arglist);
+                Node[] code = compileLambdaBody(body, inner);
+                return new DefunNode(c, name, arglist, body, code, inner);
+            }
+            /* Declare the name first so that the body can refer to it */
+            int slot = scope.declare(name);
+            Scope inner = new Scope(scope, arglist);
+            Node[] code = compileLambdaBody(body, inner);
+            Node lambda = new LambdaNode(c, arglist, body, code, inner);
+            return new LocalDefineNode(c, name, slot, lambda);
+        }
+        if(fun == CronoFunction.LET.function ||
+           fun == CronoFunction.LETREC.function)
+        {
+            if(args.length < 2 || !(args[0] instanceof Cons)) {
+                return null;
+            }
+            List<CronoType> pairs = ((Cons)args[0]).toList();
+            if(args[0] == Nil.NIL) {
+                pairs.clear();
+            }
+            boolean recursive = (fun == CronoFunction.LETREC.function);
+            Symbol[] syms = new Symbol[pairs.size()];
+            CronoType[] exprs = new CronoType[pairs.size()];
+            for(int i = 0; i < syms.length; ++i) {
+                CronoType pair = pairs.get(i);
+                if(!(pair instanceof Cons) || pair == Nil.NIL) {
+                    return null;
+                }
+                CronoType car = ((Cons)pair).car();
+                CronoType cdr = ((Cons)pair).cdr();
+                if(!(car instanceof Symbol)) {
+                    return null;
+                }
+                if(cdr instanceof Cons) {
+                    if(((Cons)cdr).cdr() != Nil.NIL) {
+                        return null;
+                    }
+                    cdr = ((Cons)cdr).car();
+                }
+                syms[i] = (Symbol)car;
+                exprs[i] = cdr;
+            }
+            Scope inner = new Scope(scope, syms);
+            Node[] values = compile(exprs, recursive ? inner : scope);
+            Node[] body = compileBody(rest(args, 1), inner);
+            return new LetNode(c, values, body, inner, recursive);
+        }
+        return null;
+    }
+    
+    /**
+     * Takes the quote off each quoted argument of a special form.
+     * The interpreter visits these arguments without evaluating them, which
+     * leaves a quoted argument as the node it quotes.
+     */
+    static void unquote(CronoType[] args) {
+        for(int i = 0; i < args.length; ++i) {
+            if(args[i] instanceof Quote) {
+                args[i] = ((Quote)args[i]).node;
+            }
+        }
+    }
+    
+    private static Symbol[] arglist(CronoType list) {
+        if(list == Nil.NIL) {
+            return new Symbol[0];
+        }
+        if(!(list instanceof Cons)) {
+            return null;
+        }
+        List<CronoType> items = ((Cons)list).toList();
+        Symbol[] arglist = new Symbol[items.size()];
+        for(int i = 0; i < arglist.length; ++i) {
+            if(!(items.get(i) instanceof Symbol)) {
+                return null;
+            }
+            arglist[i] = (Symbol)items.get(i);
+        }
+        return arglist;
+    }
+    
+    private static CronoType[] rest(CronoType[] args, int start) {
+        CronoType[] rest = new CronoType[args.length - start];
+        for(int i = 0; i < rest.length; ++i) {
+            rest[i] = args[start + i];
+        }
+        return rest;
+    }
+}
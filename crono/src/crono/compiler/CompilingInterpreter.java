@@ -0,0 +1,202 @@
+package crono.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import crono.Environment;
+import crono.Interpreter;
+import crono.TailCall;
+import crono.TooManyArgsException;
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.Function;
+import crono.type.Function.EvalType;
+import crono.type.LambdaFunction;
+import crono.type.PartialApplication;
+import crono.type.Symbol;
+
+/**
+ * An Interpreter that compiles each form it is asked to evaluate into a tree
+ * of Nodes before running it, and compiles the body of each lambda once when
+ * the lambda expression is compiled.
+ * The reference Visitor implementation in Interpreter is still used for
+ * dynamic scoping, tracing, AST printing and environment reporting, and for
+ * builtins that take their arguments unevaluated.
+ */
+public class CompilingInterpreter extends Interpreter {
+    protected final Compiler compiler;
+    /* Forms are cached so that builtins which visit the same AST repeatedly
+     * (such as try, or the prelude being loaded per file) only compile it
+     * once. */
+    private final Map<Cons, Node> compiled;
+    
+    public CompilingInterpreter() {
+        super();
+        compiler = new Compiler(this);
+        compiled = new WeakHashMap<Cons, Node>();
+    }
+    /**
+     * Creates a CompilingInterpreter that takes over the options and
+     * environment of an existing Interpreter.
+     * @param base The Interpreter to copy.
+     */
+    public CompilingInterpreter(Interpreter base) {
+        super(base);
+        compiler = new Compiler(this);
+        compiled = new WeakHashMap<Cons, Node>();
+    }
+    
+    /**
+     * Compiles and runs a cons node.
+     * Only fully evaluated forms are compiled; anything else, or any form
+     * visited while an instrumentation option is on, goes to the reference
+     * implementation.
+     * @param c The Cons node to visit.
+     * @return The value obtained by running the compiled node.
+     */
+    public CronoType visit(Cons c) {
+        if(eval != EvalType.FULL || dynamic || trace || printAST || showEnv) {
+            return super.visit(c);
+        }
+        tail = false; /*< Compiled code does its own tail calls */
+        
+        Node node = compiled.get(c);
+        if(node == null) {
+            node = compiler.compile(c);
+            compiled.put(c, node);
+        }
+        
+        int depth = envStack.size();
+        try {
+            return node.eval(this, null);
+        }catch(RuntimeException re) {
+            envStack.setSize(depth);
+            except(re);
+        }
+        return null;
+    }
+    
+    /**
+     * Applies a function to already evaluated arguments.
+     * Follows the same rules as Interpreter.visit(Cons): functions given too
+     * few arguments are curried, and builtins have their argument types
+     * checked.
+     * @param fun The function to apply.
+     * @param args The evaluated arguments.
+     * @return The result of the application.
+     */
+    public CronoType apply(Function fun, CronoType[] args) {
+        int arglen = args.length;
+        int nargs = fun.arity;
+        if(arglen < nargs) {
+            if(arglen == 0) {
+                return fun;
+            }
+            return curry(fun, args);
+        }
+        if(arglen > nargs && !fun.variadic) {
+            throw new TooManyArgsException(fun, arglen, nargs, args);
+        }
+        if(!(fun instanceof LambdaFunction)) {
+            checkTypes(fun, args);
+        }
+        return TailCall.resolve(this, fun.run(this, args));
+    }
+    
+    /**
+     * Applies a builtin to exactly as many arguments as it takes.
+     * No argument array is built unless a type check fails.
+     * @param fun A builtin that fully evaluates its arguments.
+     * @return The result of the application.
+     */
+    public CronoType apply(Function fun) {
+        return TailCall.resolve(this, fun.run0(this));
+    }
+    public CronoType apply(Function fun, CronoType arg) {
+        if(fun.checked && !fun.accepts(0, arg)) {
+            checkTypes(fun, new CronoType[]{arg});
+        }
+        return TailCall.resolve(this, fun.run1(this, arg));
+    }
+    public CronoType apply(Function fun, CronoType first, CronoType second) {
+        if(fun.checked &&
+           !(fun.accepts(0, first) && fun.accepts(1, second)))
+        {
+            checkTypes(fun, new CronoType[]{first, second});
+        }
+        return TailCall.resolve(this, fun.run2(this, first, second));
+    }
+    public CronoType apply(Function fun, CronoType first, CronoType second,
+                           CronoType third)
+    {
+        if(fun.checked && !(fun.accepts(0, first) && fun.accepts(1, second) &&
+                            fun.accepts(2, third)))
+        {
+            checkTypes(fun, new CronoType[]{first, second, third});
+        }
+        return TailCall.resolve(this, fun.run3(this, first, second, third));
+    }
+    
+    /**
+     * Runs a function that does not take fully evaluated arguments through
+     * the reference interpreter.
+     * Local variables are copied into a temporary environment so that the
+     * interpreter can find them by name, and copied back when it returns,
+     * since the form may define or rebind them.
+     * @param fun The already resolved function.
+     * @param form The application form; its head is not evaluated again.
+     * @param scope The scope the form was compiled in.
+     * @param frame The current frame.
+     * @return The result of the application.
+     */
+    public CronoType interpret(Function fun, Cons form, Scope scope,
+                               Frame frame)
+    {
+        Cons call = new Cons(fun, form.cdr());
+        if(frame == null) {
+            return super.visit(call);
+        }
+        
+        Environment env = Frame.toEnvironment(getEnv(), scope, frame);
+        pushEnv(env);
+        try {
+            CronoType result = super.visit(call);
+            Frame.fromEnvironment(env, scope, frame);
+            return result;
+        }finally {
+            popEnv();
+        }
+    }
+    
+    private Function curry(Function fun, CronoType[] args) {
+        if(fun instanceof LambdaFunction) {
+            return ((LambdaFunction)fun).curry(args);
+        }
+        if(fun.eval == EvalType.FULL) {
+            return new PartialApplication(fun, args);
+        }
+        
+        /* Builtin partial application */
+        List<CronoType> body = new ArrayList<CronoType>();
+        Node[] argnodes = new Node[fun.arity];
+        body.add(fun);
+        for(int i = 0; i < args.length; ++i) {
+            body.add(args[i]);
+            argnodes[i] = new ConstantNode(args[i]);
+        }
+        Symbol[] arglist = new Symbol[fun.arity - args.length];
+        for(int i = 0; i < arglist.length; ++i) {
+            arglist[i] = Symbol.intern(String.format("_i?%d!_", i));
+            body.add(arglist[i]);
+            argnodes[args.length + i] = new LocalRefNode(arglist[i], 0, i);
+        }
+        Cons call = Cons.fromList(body);
+        Scope scope = new Scope(null, arglist);
+        Node[] code = {new CallNode(call, new ConstantNode(fun), argnodes,
+                                    scope)};
+        return new Closure(arglist, new CronoType[]{call}, getEnv(),
+                           new Body(code), scope, null);
+    }
+}
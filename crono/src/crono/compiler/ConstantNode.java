@@ -0,0 +1,23 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+
+/**
+ * A node that always evaluates to the same value, such as a number, string,
+ * quoted list or Nil.
+ */
+public class ConstantNode extends Node {
+    public final CronoType value;
+    
+    public ConstantNode(CronoType source, CronoType value) {
+        super(source);
+        this.value = value;
+    }
+    public ConstantNode(CronoType value) {
+        this(value, value);
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        return value;
+    }
+}
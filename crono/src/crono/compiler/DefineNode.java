@@ -0,0 +1,24 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * A define at the top level, which binds the symbol in the environment.
+ */
+public class DefineNode extends Node {
+    public final Symbol sym;
+    public final Node value;
+    
+    public DefineNode(CronoType source, Symbol sym, Node value) {
+        super(source);
+        this.sym = sym;
+        this.value = value;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        CronoType result = value.eval(interp, frame);
+        interp.getEnv().put(sym, result);
+        return result;
+    }
+}
@@ -0,0 +1,31 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * A defun at the top level.
+ * The function is bound in the environment. Unless that defines a global,
+ * which the function can already see, it is also bound in its own
+ * environment so that it can call itself.
+ */
+public class DefunNode extends LambdaNode {
+    public final Symbol name;
+    
+    public DefunNode(CronoType source, Symbol name, Symbol[] arglist,
+                     CronoType[] body, Node[] code, Scope scope)
+    {
+        super(source, arglist, body, code, scope);
+        this.name = name;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        Closure closure = new Closure(arglist, body, interp.getEnv(), code,
+                                      scope, frame);
+        interp.getEnv().put(name, closure);
+        if(!interp.getEnv().isGlobal()) {
+            closure.environment.put(name, closure);
+        }
+        return closure;
+    }
+}
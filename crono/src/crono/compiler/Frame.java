@@ -0,0 +1,93 @@
+package crono.compiler;
+
+import crono.Environment;
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * Storage for the variables of one lambda call, let or letrec.
+ * Variables are addressed by the (depth, slot) pairs the Compiler assigns
+ * them: depth is the number of parent links to follow, and slot the index
+ * into that frame.
+ */
+public class Frame {
+    public final Frame parent;
+    public final CronoType[] slots;
+    
+    public Frame(Frame parent, int size) {
+        this.parent = parent;
+        this.slots = new CronoType[size];
+    }
+    public Frame(Frame parent, CronoType[] slots) {
+        this.parent = parent;
+        this.slots = slots;
+    }
+    
+    public CronoType get(int depth, int slot) {
+        Frame frame = this;
+        for(int i = 0; i < depth; ++i) {
+            frame = frame.parent;
+        }
+        return frame.slots[slot];
+    }
+    public void set(int depth, int slot, CronoType value) {
+        Frame frame = this;
+        for(int i = 0; i < depth; ++i) {
+            frame = frame.parent;
+        }
+        frame.slots[slot] = value;
+    }
+    
+    /**
+     * Copies the variables visible through a frame into an Environment.
+     * This is used to hand code to the reference interpreter, which looks
+     * everything up by name.
+     * @param base The environment holding the non-local symbols.
+     * @param scope The scope the frame was compiled with.
+     * @param frame The innermost frame.
+     * @return A new Environment containing base and the variables.
+     */
+    public static Environment toEnvironment(Environment base, Scope scope,
+                                            Frame frame)
+    {
+        Environment env = base.local();
+        bind(env, scope, frame);
+        return env;
+    }
+    /**
+     * Copies the variables of the innermost frame back from an Environment
+     * made by toEnvironment, once the reference interpreter has run code in
+     * it that may have defined or rebound them.
+     * Like a define run by the interpreter, this never changes the frames
+     * of enclosing scopes.
+     * @param env The environment toEnvironment returned.
+     * @param scope The scope the frame was compiled with.
+     * @param frame The innermost frame.
+     */
+    public static void fromEnvironment(Environment env, Scope scope,
+                                       Frame frame)
+    {
+        if(scope == null || frame == null) {
+            return;
+        }
+        for(int i = 0; i < frame.slots.length; ++i) {
+            Symbol sym = scope.name(i);
+            CronoType value = null;
+            if(env.cell(sym) == null) {
+                value = env.get(sym); /*< Bound locally */
+            }
+            frame.slots[i] = value;
+        }
+    }
+    private static void bind(Environment env, Scope scope, Frame frame) {
+        if(scope == null || frame == null) {
+            return;
+        }
+        bind(env, scope.parent, frame.parent); /*< Inner scopes shadow */
+        for(int i = 0; i < frame.slots.length; ++i) {
+            if(frame.slots[i] != null) {
+                env.put(scope.name(i), frame.slots[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package crono.compiler;
+
+import crono.Cell;
+import crono.Environment;
+import crono.SymbolScopeException;
+import crono.TypeScopeException;
+import crono.type.Atom;
+import crono.type.CronoType;
+import crono.type.CronoTypeId;
+import crono.type.Symbol;
+
+/**
+ * A reference to a symbol or type that is not lexically bound.
+ * Resolution is the same as Interpreter.visit(Atom): symbols are looked up
+ * in the environment, and incomplete types are resolved afterwards.
+ * A symbol that is not shadowed by a local binding holds on to its global
+ * cell, so later evaluations read the cell instead of looking the name up.
+ */
+public class GlobalRefNode extends Node {
+    public final Atom atom;
+    private Cell cell;
+    
+    public GlobalRefNode(Atom atom) {
+        super(atom);
+        this.atom = atom;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        CronoType t = atom;
+        if(t instanceof Symbol) {
+            Environment env = interp.getEnv();
+            if(cell == null || !env.sees(cell)) {
+                cell = env.cell((Symbol)atom);
+            }
+            t = (cell == null) ? env.get((Symbol)atom) : cell.value;
+            if(t == null) {
+                throw new SymbolScopeException((Symbol)atom);
+            }
+        }
+        if(t instanceof CronoTypeId && !((CronoTypeId)t).complete()) {
+            CronoType res = t;
+            t = interp.getEnv().getType((CronoTypeId)t);
+            if(t == null) {
+                throw new TypeScopeException(((CronoTypeId)res).type);
+            }
+        }
+        return t;
+    }
+}
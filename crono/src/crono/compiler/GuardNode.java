@@ -0,0 +1,57 @@
+package crono.compiler;
+
+import crono.InterpreterException;
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.Function;
+
+/**
+ * A special form compiled to a dedicated node, such as an IfNode.
+ * The Compiler only does this when the head of the form refers to the
+ * builtin at the time the form is compiled; the head can be redefined
+ * afterwards, so each run checks that it still does. If it no longer does,
+ * the form is run by the reference interpreter with whatever the head now
+ * refers to, as the interpreter would have done.
+ */
+public class GuardNode extends Node {
+    private static final String _not_function =
+        "Invalid Function Application: %s is not a function in %s";
+    
+    public final Node head;
+    public final Function fun; /*< The builtin the form was compiled for */
+    public final Node special;
+    public final Scope scope;
+    
+    public GuardNode(Cons source, Node head, Function fun, Node special,
+                     Scope scope)
+    {
+        super(source);
+        this.head = head;
+        this.fun = fun;
+        this.special = special;
+        this.scope = scope;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        CronoType value = head.eval(interp, frame);
+        if(value == fun) {
+            return special.eval(interp, frame);
+        }
+        if(!(value instanceof Function)) {
+            throw new InterpreterException(_not_function, value, source);
+        }
+        return interp.interpret((Function)value, (Cons)source, scope, frame);
+    }
+    
+    /**
+     * Checks that the head still refers to the builtin, for code generated
+     * by the BytecodeCompiler.
+     */
+    public boolean applies(CompilingInterpreter interp, Frame frame) {
+        return (head.eval(interp, frame) == fun);
+    }
+    
+    public void tail() {
+        special.tail();
+    }
+}
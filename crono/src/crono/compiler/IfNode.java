@@ -0,0 +1,26 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+
+public class IfNode extends Node {
+    public final Node test, then, otherwise;
+    
+    public IfNode(CronoType source, Node test, Node then, Node otherwise) {
+        super(source);
+        this.test = test;
+        this.then = then;
+        this.otherwise = otherwise;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        if(test.test(interp, frame)) {
+            return then.eval(interp, frame);
+        }
+        return otherwise.eval(interp, frame);
+    }
+    
+    public void tail() {
+        then.tail();
+        otherwise.tail();
+    }
+}
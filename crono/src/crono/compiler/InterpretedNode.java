@@ -0,0 +1,25 @@
+package crono.compiler;
+
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.Function;
+
+/**
+ * Application of a builtin that takes its arguments unevaluated, and which
+ * the Compiler has no dedicated node for (try, struct, ...).
+ * These are run through the reference interpreter.
+ */
+public class InterpretedNode extends Node {
+    public final Function fun;
+    public final Scope scope;
+    
+    public InterpretedNode(Cons source, Function fun, Scope scope) {
+        super(source);
+        this.fun = fun;
+        this.scope = scope;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        return interp.interpret(fun, (Cons)source, scope, frame);
+    }
+}
@@ -0,0 +1,34 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * Creates a Closure over the current environment and frame.
+ * The body is compiled once, and shared by every closure this node creates.
+ * A body that refers to no enclosing local variables does not keep the
+ * frame, so the closure does not hold on to the variables around it.
+ */
+public class LambdaNode extends Node {
+    public final Symbol[] arglist;
+    public final CronoType[] body;
+    public final Body code;
+    public final Scope scope; /*< Scope of the arguments */
+    
+    public LambdaNode(CronoType source, Symbol[] arglist, CronoType[] body,
+                      Node[] code, Scope scope)
+    {
+        super(source);
+        this.arglist = arglist;
+        this.body = body;
+        this.code = new Body(code);
+        this.scope = scope;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        if(!scope.captures()) {
+            frame = null;
+        }
+        return new Closure(arglist, body, interp.getEnv(), code, scope, frame);
+    }
+}
@@ -0,0 +1,44 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+
+/**
+ * A let or letrec form, run in a new frame holding its bindings.
+ * Let values are evaluated in the enclosing frame. Letrec values are
+ * evaluated in the new frame in order, so lambdas bound by a letrec can
+ * refer to themselves and to each other.
+ */
+public class LetNode extends Node {
+    public final Node[] values;
+    public final Node[] body;
+    public final Scope scope;
+    public final boolean recursive;
+    
+    public LetNode(CronoType source, Node[] values, Node[] body, Scope scope,
+                   boolean recursive)
+    {
+        super(source);
+        this.values = values;
+        this.body = body;
+        this.scope = scope;
+        this.recursive = recursive;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        Frame inner = new Frame(frame, scope.size());
+        Frame valueFrame = recursive ? inner : frame;
+        for(int i = 0; i < values.length; ++i) {
+            inner.slots[i] = values[i].eval(interp, valueFrame);
+        }
+        
+        CronoType result = null;
+        for(int i = 0; i < body.length; ++i) {
+            result = body[i].eval(interp, inner);
+        }
+        return result;
+    }
+    
+    public void tail() {
+        body[body.length - 1].tail();
+    }
+}
@@ -0,0 +1,30 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * A define inside a lambda or let body.
+ * Like the define builtin, it binds the symbol for the rest of the body it
+ * appears in; the Compiler gives the symbol a slot in that body's frame.
+ */
+public class LocalDefineNode extends Node {
+    public final Symbol sym;
+    public final int slot;
+    public final Node value;
+    
+    public LocalDefineNode(CronoType source, Symbol sym, int slot,
+                           Node value)
+    {
+        super(source);
+        this.sym = sym;
+        this.slot = slot;
+        this.value = value;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        CronoType result = value.eval(interp, frame);
+        frame.slots[slot] = result;
+        return result;
+    }
+}
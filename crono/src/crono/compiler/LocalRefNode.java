@@ -0,0 +1,40 @@
+package crono.compiler;
+
+import crono.SymbolScopeException;
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * A reference to a symbol bound by an enclosing lambda, let or letrec,
+ * resolved at compile time to a frame depth and slot.
+ * Symbols bound by a define inside a body are looked up in the environment
+ * until the define has run, as the interpreter would.
+ */
+public class LocalRefNode extends Node {
+    public final Symbol sym;
+    public final int depth, slot;
+    private final GlobalRefNode undefined;
+    
+    public LocalRefNode(Symbol sym, int depth, int slot) {
+        this(sym, depth, slot, false);
+    }
+    public LocalRefNode(Symbol sym, int depth, int slot, boolean declared) {
+        super(sym);
+        this.sym = sym;
+        this.depth = depth;
+        this.slot = slot;
+        this.undefined = declared ? new GlobalRefNode(sym) : null;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        CronoType value = frame.get(depth, slot);
+        if(value == null) {
+            if(undefined != null) {
+                return undefined.eval(interp, frame);
+            }
+            /* A letrec binding that hasn't been evaluated yet */
+            throw new SymbolScopeException(sym);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,69 @@
+package crono.compiler;
+
+import crono.type.CronoInteger;
+import crono.type.CronoType;
+import crono.type.Nil;
+
+/**
+ * A node in a compiled executable tree.
+ * Nodes are produced once by the Compiler from a parsed AST and can then be
+ * run any number of times without re-resolving the structure of the code.
+ */
+public abstract class Node {
+    public final CronoType source; /*< AST this node was compiled from */
+    
+    protected Node(CronoType source) {
+        this.source = source;
+    }
+    
+    /**
+     * Runs this node.
+     * @param interp The interpreter the node is running in.
+     * @param frame The innermost frame of local variables; null at the top
+     *              level.
+     * @return The value of this node.
+     */
+    public abstract CronoType eval(CompilingInterpreter interp, Frame frame);
+    
+    /**
+     * Runs this node where an integer is expected, without boxing it.
+     * Nodes that compute integers themselves override this, so that their
+     * results can flow into other arithmetic unboxed; the default unboxes
+     * the value of eval.
+     * @param interp The interpreter the node is running in.
+     * @param frame The innermost frame of local variables.
+     * @return The integer value of this node.
+     * @throws UnexpectedValue If the value is not an integer.
+     */
+    public long evalInt(CompilingInterpreter interp, Frame frame)
+        throws UnexpectedValue
+    {
+        return unbox(eval(interp, frame));
+    }
+    /**
+     * Runs this node as the test of an if or while.
+     * @return If the value of this node is not Nil.
+     */
+    public boolean test(CompilingInterpreter interp, Frame frame) {
+        return (eval(interp, frame) != Nil.NIL);
+    }
+    
+    protected static long unbox(CronoType value) throws UnexpectedValue {
+        if(value instanceof CronoInteger) {
+            return ((CronoInteger)value).value;
+        }
+        throw new UnexpectedValue(value);
+    }
+    
+    /**
+     * Marks this node as being in tail position of a lambda body.
+     * Nodes that can make a call in tail position may then return a
+     * TailCall from eval instead of a value.
+     */
+    public void tail() {
+    }
+    
+    public String toString() {
+        return source.toString();
+    }
+}
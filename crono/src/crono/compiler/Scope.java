@@ -0,0 +1,84 @@
+package crono.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import crono.type.Symbol;
+
+/**
+ * Compile-time record of the symbols bound by one lambda, let or letrec.
+ * Each Scope corresponds to a Frame at run time; the position of a symbol in
+ * the scope is its slot in the frame.
+ */
+public class Scope {
+    public final Scope parent;
+    private final List<Symbol> names;
+    private final int bound; /*< Number of slots bound on entry */
+    private boolean captures; /*< Refers to variables of enclosing scopes */
+    
+    public Scope(Scope parent, Symbol[] syms) {
+        this.parent = parent;
+        this.names = new ArrayList<Symbol>();
+        for(int i = 0; i < syms.length; ++i) {
+            names.add(syms[i]);
+        }
+        this.bound = syms.length;
+    }
+    
+    /**
+     * Number of slots a frame for this scope needs.
+     */
+    public int size() {
+        return names.size();
+    }
+    public Symbol name(int slot) {
+        return names.get(slot);
+    }
+    
+    /**
+     * Finds the slot of a symbol in this scope only.
+     * If the symbol is bound more than once the last binding wins, as it
+     * would when binding into an Environment.
+     * @return The slot, or -1 if the symbol is not bound here.
+     */
+    public int slot(Symbol sym) {
+        for(int i = names.size() - 1; i >= 0; --i) {
+            if(names.get(i).equals(sym)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Whether a slot was added by declare, and so may be read before the
+     * define that fills it has run.
+     */
+    public boolean declared(int slot) {
+        return slot >= bound;
+    }
+    
+    /**
+     * Whether code in this scope refers to variables of enclosing scopes.
+     * If not, a closure for this scope need not keep the enclosing frame.
+     */
+    public boolean captures() {
+        return captures;
+    }
+    public void capture() {
+        captures = true;
+    }
+    
+    /**
+     * Adds a symbol to this scope, for defines inside a body.
+     * @return The slot of the symbol.
+     */
+    public int declare(Symbol sym) {
+        int slot = slot(sym);
+        if(slot < 0) {
+            names.add(sym);
+            slot = names.size() - 1;
+        }
+        return slot;
+    }
+}
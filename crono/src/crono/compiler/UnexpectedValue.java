@@ -0,0 +1,20 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+
+/**
+ * Thrown by Node.evalInt when a node turns out not to have an integer value.
+ * The exception carries the value, which has already been computed, so the
+ * caller can continue on its generic path without evaluating the node
+ * again. It is only thrown when a speculation fails, so no stack trace is
+ * recorded.
+ */
+public class UnexpectedValue extends Exception {
+    private static final long serialVersionUID = 1L;
+    public final CronoType value;
+    
+    public UnexpectedValue(CronoType value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
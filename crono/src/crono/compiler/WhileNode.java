@@ -0,0 +1,22 @@
+package crono.compiler;
+
+import crono.type.CronoType;
+import crono.type.Nil;
+
+public class WhileNode extends Node {
+    public final Node test, body;
+    
+    public WhileNode(CronoType source, Node test, Node body) {
+        super(source);
+        this.test = test;
+        this.body = body;
+    }
+    
+    public CronoType eval(CompilingInterpreter interp, Frame frame) {
+        CronoType result = Nil.NIL;
+        while(test.test(interp, frame)) {
+            result = body.eval(interp, frame);
+        }
+        return result;
+    }
+}
@@ -1,5 +1,8 @@
 package crono.type;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -103,28 +106,51 @@ public class Cons extends CronoType implements Iterable<CronoType> {
         return TYPEID;
     }
     
+    /* If o is a cons cell with contents, rather than Nil or T */
+    private static boolean pair(Object o) {
+        return (o instanceof Cons) && !(o instanceof Nil) &&
+            !(o instanceof TruthValue);
+    }
+    
+    /**
+     * Prints the list.
+     * Nested lists are printed from an explicit stack rather than by
+     * recursion, so that deeply nested data can be printed.
+     */
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        builder.append("(");
-        
-        Cons next = this;
-        while(next != null) {
-            builder.append(next.car);
-            if(next.cdr instanceof Cons) {
-                if(next.cdr == Nil.NIL) {
-                    next = null;
+        Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(this);
+        while(!pending.isEmpty()) {
+            Object item = pending.pop();
+            if(!pair(item)) {
+                builder.append(item);
+                continue;
+            }
+            
+            List<Object> parts = new ArrayList<Object>();
+            parts.add("(");
+            Cons next = (Cons)item;
+            while(next != null) {
+                parts.add((next.car == null) ? "null" : next.car);
+                if(next.cdr instanceof Cons) {
+                    if(next.cdr == Nil.NIL) {
+                        next = null;
+                    }else {
+                        parts.add(" ");
+                        next = (Cons)(next.cdr);
+                    }
                 }else {
-                    builder.append(" ");
-                    next = (Cons)(next.cdr);
+                    parts.add(" . ");
+                    parts.add((next.cdr == null) ? "null" : next.cdr);
+                    next = null;
                 }
-            }else {
-                builder.append(" . ");
-                builder.append(next.cdr);
-                next = null;
+            }
+            parts.add(")");
+            for(int i = parts.size() - 1; i >= 0; --i) {
+                pending.push(parts.get(i));
             }
         }
-        
-        builder.append(")");
         return builder.toString();
     }
     
@@ -147,6 +173,11 @@ public class Cons extends CronoType implements Iterable<CronoType> {
         return list;
     }
     
+    /**
+     * Compares two lists element by element.
+     * Pairs of nested lists still to be compared are kept on an explicit
+     * stack rather than compared by recursion.
+     */
     public boolean equals(Object o) {
         if(!(o instanceof Cons)) {
             return false;
@@ -158,7 +189,22 @@ public class Cons extends CronoType implements Iterable<CronoType> {
             return (this instanceof TruthValue);
         }
         
-        Cons lhs = (Cons)o, rhs = this;
-        return (lhs.car().equals(rhs.car()) && lhs.cdr().equals(rhs.cdr()));
+        Deque<CronoType> pending = new ArrayDeque<CronoType>();
+        pending.push((Cons)o);
+        pending.push(this);
+        while(!pending.isEmpty()) {
+            CronoType rhs = pending.pop(), lhs = pending.pop();
+            if(!pair(lhs) || !pair(rhs)) {
+                if(!lhs.equals(rhs)) {
+                    return false;
+                }
+                continue;
+            }
+            pending.push(((Cons)lhs).cdr());
+            pending.push(((Cons)rhs).cdr());
+            pending.push(((Cons)lhs).car());
+            pending.push(((Cons)rhs).car());
+        }
+        return true;
     }
 }
@@ -26,8 +26,7 @@ public class CronoVector extends CronoArray {
     public CronoVector(int size, TypeId accept) {
         super(accept);
         
-        this.type = new NestedTypeId(":vector", CronoVector.class,
-                                     new TypeId[]{accept}, TYPEID);
+        this.type = vectorOf(accept);
         
         this.size = size;
         this.data = new ArrayList<CronoType>(size);
@@ -40,8 +39,7 @@ public class CronoVector extends CronoArray {
     }
     public CronoVector(CronoType[] data, TypeId accept) {
         super(accept);
-        this.type = new NestedTypeId(":vector", CronoVector.class,
-                                     new TypeId[]{accept}, TYPEID);
+        this.type = vectorOf(accept);
         this.data = new ArrayList<CronoType>();
         for(int i = 0; i < data.length; ++i) {
             this.data.add(data[i]);
@@ -49,6 +47,18 @@ public class CronoVector extends CronoArray {
         this.size = data.length;
     }
     
+    /* Vectors of :any are by far the most common, and skip the lookup */
+    private static final TypeId ANY_VECTOR =
+        NestedTypeId.intern(":vector", CronoVector.class,
+                            new TypeId[]{CronoType.TYPEID}, TYPEID);
+    private static TypeId vectorOf(TypeId accept) {
+        if(accept == CronoType.TYPEID) {
+            return ANY_VECTOR;
+        }
+        return NestedTypeId.intern(":vector", CronoVector.class,
+                                   new TypeId[]{accept}, TYPEID);
+    }
+    
     public int size() {
         return size;
     }
@@ -28,6 +28,10 @@ public abstract class Function extends Atom {
     public final boolean variadic;
     public final EvalType eval;
     public final int arity;
+    /* The argument types that need checking; arguments of type :any are
+     * left out as null, and checked is false if none are left */
+    private final TypeId[] checks;
+    public final boolean checked;
     
     protected Function() {
         this(null, null, 0, false, EvalType.FULL);
@@ -49,10 +53,52 @@ public abstract class Function extends Atom {
         this.arity = arity;
         this.variadic = variadic;
         this.eval = eval;
+        
+        boolean checked = false;
+        this.checks = (args == null) ? null : new TypeId[args.length];
+        for(int i = 0; checks != null && i < checks.length; ++i) {
+            if(args[i] != null && args[i] != CronoType.TYPEID) {
+                checks[i] = args[i];
+                checked = true;
+            }
+        }
+        this.checked = checked;
+    }
+    
+    /**
+     * Checks an argument against the type this function expects for it.
+     * Arguments of type :any are accepted without being looked at.
+     * @param i The index of the argument in args.
+     * @param arg The argument.
+     * @return If arg is of the expected type.
+     */
+    public boolean accepts(int i, CronoType arg) {
+        return (checks[i] == null || checks[i].isType(arg));
     }
     
     public abstract CronoType run(Visitor v, CronoType[] args);
     
+    /* Fixed-arity entry points, for callers that already hold the arguments
+     * and have checked their types. Builtins that are called often override
+     * these so that no argument array is built; by default they build one
+     * and call run. */
+    private static final CronoType[] NO_ARGS = new CronoType[0];
+    
+    public CronoType run0(Visitor v) {
+        return run(v, NO_ARGS);
+    }
+    public CronoType run1(Visitor v, CronoType arg) {
+        return run(v, new CronoType[]{arg});
+    }
+    public CronoType run2(Visitor v, CronoType first, CronoType second) {
+        return run(v, new CronoType[]{first, second});
+    }
+    public CronoType run3(Visitor v, CronoType first, CronoType second,
+                          CronoType third)
+    {
+        return run(v, new CronoType[]{first, second, third});
+    }
+    
     public TypeId typeId() {
         return Function.TYPEID;
     }
@@ -1,8 +1,10 @@
 package crono.type;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import crono.Environment;
 import crono.Visitor;
@@ -13,6 +15,11 @@ public class LambdaFunction extends Function {
     public final Environment environment; /*< for scoping */
     
     public LambdaFunction(Symbol[] args, CronoType body[], Environment env) {
+        this(args, body, env, false);
+    }
+    private LambdaFunction(Symbol[] args, CronoType body[], Environment env,
+                           boolean shared)
+    {
         super(new TypeId[args.length], CronoType.TYPEID, args.length);
         
         for(int i = 0; i < args.length; ++i) {
@@ -20,12 +27,71 @@ public class LambdaFunction extends Function {
         }
         this.arglist = args;
         this.body = body;
-        this.environment = new Environment(env);
+        this.environment = shared ? env : env.local();
     }
     public LambdaFunction(LambdaFunction fun) {
         this(fun.arglist, fun.body, fun.environment);
     }
     
+    private static final Symbol EVAL = Symbol.intern("eval");
+    
+    /**
+     * Creates a lambda that captures only the local variables its body
+     * mentions, instead of every local in scope. Globals are shared either
+     * way. A body that mentions eval captures everything, since the code it
+     * evaluates may refer to any variable.
+     * Under dynamic scope the arguments of the call the lambda is made in
+     * are not locals but rebound globals, restored when the call returns;
+     * the lambda keeps the values of those its body mentions, other than
+     * its own arguments, so that it still works once that call is gone.
+     * @param args The argument list of the lambda.
+     * @param body The body of the lambda.
+     * @param env The environment the lambda is created in.
+     * @return The new lambda.
+     */
+    public static LambdaFunction capture(Symbol[] args, CronoType[] body,
+                                         Environment env)
+    {
+        boolean shallow = (env.bindings() != null);
+        if(env.hasLocals() || shallow) {
+            Set<Symbol> syms = new HashSet<Symbol>();
+            for(int i = 0; i < body.length; ++i) {
+                mentions(body[i], syms);
+            }
+            if(!syms.contains(EVAL)) {
+                env = env.restrict(syms);
+            }
+            if(shallow) {
+                syms.removeAll(Arrays.asList(args));
+                env = env.keep(syms);
+            }
+        }
+        return new LambdaFunction(args, body, env);
+    }
+    private static void mentions(CronoType node, Set<Symbol> syms) {
+        if(node instanceof Symbol) {
+            syms.add((Symbol)node);
+        }else if(node instanceof Quote) {
+            mentions(((Quote)node).node, syms);
+        }else if(node instanceof Cons) {
+            for(CronoType item : (Cons)node) {
+                mentions(item, syms);
+            }
+        }
+    }
+    
+    /**
+     * Creates a lambda with the same arguments and body that runs in the
+     * given environment itself, instead of a local copy of it; bindings made
+     * in env afterwards are seen by the lambda. Letrec uses this to bind
+     * lambdas that refer to each other.
+     * @param env The environment to share.
+     * @return The new lambda; the body is run by visiting it.
+     */
+    public LambdaFunction within(Environment env) {
+        return new LambdaFunction(arglist, body, env, true);
+    }
+    
     public int arity() {
         return arglist.length;
     }
@@ -38,17 +104,40 @@ public class LambdaFunction extends Function {
         return Function.EvalType.FULL;
     }
     
-    public CronoType run(Visitor v, CronoType[] args) {
-        Environment env = new Environment(environment);
+    /**
+     * Partially applies this lambda.
+     * The given arguments are bound in a copy of the closure environment; the
+     * body itself is shared with this lambda.
+     * @param args Values for the first args.length arguments.
+     * @return A lambda taking the remaining arguments.
+     */
+    public LambdaFunction curry(CronoType[] args) {
+        return new LambdaFunction(remaining(args.length), body,
+                                  bind(environment, args));
+    }
+    protected Symbol[] remaining(int bound) {
+        Symbol[] remain = new Symbol[arglist.length - bound];
+        for(int i = 0; i < remain.length; ++i) {
+            remain[i] = arglist[bound + i];
+        }
+        return remain;
+    }
+    protected Environment bind(Environment base, CronoType[] args) {
+        Environment env = new Environment(base);
         for(int i = 0; i < args.length; ++i) {
             env.put(arglist[i], args[i]);
         }
-        
-        v.pushEnv(env);
+        return env;
+    }
+    
+    public CronoType run(Visitor v, CronoType[] args) {
+        v.pushEnv(environment.call(arglist, args));
         CronoType ret = null;
-        for(int i = 0; i < body.length; ++i) {
+        int last = body.length - 1;
+        for(int i = 0; i < last; ++i) {
             ret = body[i].accept(v);
         }
+        ret = v.tail(body[last]); /*< May be a TailCall for our caller */
         v.popEnv();
         
         return ret;
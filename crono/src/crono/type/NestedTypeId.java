@@ -1,18 +1,74 @@
 package crono.type;
 
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+/**
+ * A parameterized type, such as :vector[:int].
+ * Nested types are interned: intern returns the same instance for the same
+ * name, class, parent and inner types, so most comparisons are identities.
+ * The table only holds its types weakly, so types that are no longer used,
+ * such as those of a redefined struct, can still be collected.
+ */
 public class NestedTypeId extends TypeId {
     public final TypeId[] inner;
-    public NestedTypeId(String name, Class type, TypeId[] inner) {
-        this(name, type, inner, null);
+    private final Key key; /*< Keeps the entry in interned alive */
+    
+    private static final Map<Key, WeakReference<NestedTypeId>> interned =
+        new WeakHashMap<Key, WeakReference<NestedTypeId>>();
+    
+    private NestedTypeId(Key key) {
+        super(key.name, key.type, key.parent);
+        this.inner = key.inner;
+        this.key = key;
+    }
+    
+    public static NestedTypeId intern(String name, Class<?> type,
+                                      TypeId[] inner)
+    {
+        return intern(name, type, inner, null);
+    }
+    /**
+     * Finds the nested type with the given name and inner types.
+     * @param name The image of the type.
+     * @param type The class of objects of this type.
+     * @param inner The inner types; the array is not copied.
+     * @param par The parent type.
+     * @return The single instance of the nested type.
+     */
+    public static synchronized NestedTypeId intern(String name,
+                                                   Class<?> type,
+                                                   TypeId[] inner, TypeId par)
+    {
+        Key key = new Key(name, type, inner, par);
+        WeakReference<NestedTypeId> ref = interned.get(key);
+        NestedTypeId id = (ref == null) ? null : ref.get();
+        if(id == null) {
+            id = new NestedTypeId(key);
+            interned.put(key, new WeakReference<NestedTypeId>(id));
+        }
+        return id;
     }
-    public NestedTypeId(String name, Class type, TypeId[] inner, TypeId par) {
-        super(name, type, par);
-        this.inner = inner;
+    
+    /* Nested types only match the same nesting, so the parent chain of the
+     * object has to be walked */
+    public boolean isType(CronoType object) {
+        TypeId id = object.typeId();
+        while(id != null) {
+            if(this.equals(id)) {
+                return true;
+            }
+            id = id.parent;
+        }
+        return false;
     }
     
     public boolean equals(Object o) {
+        if(o == this) {
+            return true;
+        }
         if(o instanceof NestedTypeId) {
             NestedTypeId id = ((NestedTypeId)o);
             if(id.image.equals(image) && id.type.equals(type) &&
@@ -32,4 +88,45 @@ public class NestedTypeId extends TypeId {
     public String toString() {
         return String.format("%s%s", this.image, Arrays.toString(inner));
     }
+    
+    /* Inner types are compared by identity; two keys with inner types that
+     * are equal but distinct give distinct, still equal, nested types */
+    private static final class Key {
+        private final String name;
+        private final Class<?> type;
+        private final TypeId[] inner;
+        private final TypeId parent;
+        
+        Key(String name, Class<?> type, TypeId[] inner, TypeId parent) {
+            this.name = name;
+            this.type = type;
+            this.inner = inner;
+            this.parent = parent;
+        }
+        
+        public int hashCode() {
+            int hash = name.hashCode();
+            for(int i = 0; i < inner.length; ++i) {
+                hash = hash * 31 + System.identityHashCode(inner[i]);
+            }
+            return hash;
+        }
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key)o;
+            if(!name.equals(key.name) || type != key.type ||
+               parent != key.parent || inner.length != key.inner.length)
+            {
+                return false;
+            }
+            for(int i = 0; i < inner.length; ++i) {
+                if(inner[i] != key.inner[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package crono.type;
+
+import java.util.Arrays;
+
+import crono.InterpreterException;
+import crono.Visitor;
+
+/**
+ * A builtin that has been given fewer arguments than it takes.
+ * The builtin and the arguments it was given are kept as they are; when the
+ * rest arrive, the builtin is run directly with all of them, instead of
+ * through a lambda body that has to be interpreted. Partially applying a
+ * PartialApplication again adds to the same argument list.
+ * Only builtins that fully evaluate their arguments are curried this way.
+ */
+public class PartialApplication extends Function {
+    private static final String _type_mismatch =
+        "Function '%s' expected arguments %s; got %s";
+    
+    public final Function target;
+    public final CronoType[] bound;
+    private final boolean accepted; /*< If bound passes the type checks */
+    
+    /**
+     * @param fun The builtin, or another PartialApplication.
+     * @param args The arguments given, fewer than fun takes.
+     */
+    public PartialApplication(Function fun, CronoType[] args) {
+        super(any(fun.arity - args.length), fun.returntype,
+              fun.arity - args.length, fun.variadic, EvalType.FULL);
+        CronoType[] prior = new CronoType[0];
+        if(fun instanceof PartialApplication) {
+            prior = ((PartialApplication)fun).bound;
+            fun = ((PartialApplication)fun).target;
+        }
+        this.target = fun;
+        this.bound = new CronoType[prior.length + args.length];
+        System.arraycopy(prior, 0, bound, 0, prior.length);
+        System.arraycopy(args, 0, bound, prior.length, args.length);
+        
+        boolean accepted = true;
+        for(int i = 0; target.checked && i < bound.length; ++i) {
+            accepted &= fits(i, bound[i]);
+        }
+        this.accepted = accepted;
+    }
+    
+    /* The argument types left unchecked here; the target checks them all */
+    private static TypeId[] any(int arity) {
+        TypeId[] args = new TypeId[Math.max(arity, 1)];
+        Arrays.fill(args, CronoType.TYPEID);
+        return args;
+    }
+    
+    /* Checks argument i of the full application against the target */
+    private boolean fits(int i, CronoType arg) {
+        return target.accepts(Math.min(i, target.args.length - 1), arg);
+    }
+    private void check(CronoType[] args) {
+        for(int i = 0; target.checked && i < args.length; ++i) {
+            if(!fits(i, args[i])) {
+                TypeId[] types = new TypeId[args.length];
+                for(int j = 0; j < types.length; ++j) {
+                    types[j] = args[j].typeId();
+                }
+                throw new InterpreterException(_type_mismatch, target,
+                                               Arrays.toString(target.args),
+                                               Arrays.toString(types));
+            }
+        }
+    }
+    
+    public CronoType run(Visitor v, CronoType[] args) {
+        CronoType[] all = new CronoType[bound.length + args.length];
+        System.arraycopy(bound, 0, all, 0, bound.length);
+        System.arraycopy(args, 0, all, bound.length, args.length);
+        check(all);
+        return target.run(v, all);
+    }
+    public CronoType run1(Visitor v, CronoType arg) {
+        if(bound.length != 1 || arity != 1 || !accepted || !fits(1, arg)) {
+            return run(v, new CronoType[]{arg});
+        }
+        return target.run2(v, bound[0], arg);
+    }
+    public CronoType run2(Visitor v, CronoType first, CronoType second) {
+        if(bound.length != 1 || arity != 2 || !accepted ||
+           !fits(1, first) || !fits(2, second))
+        {
+            return run(v, new CronoType[]{first, second});
+        }
+        return target.run3(v, bound[0], first, second);
+    }
+    
+    /**
+     * Prints as the lambda that builtins used to be curried into.
+     */
+    public String toString() {
+        StringBuilder arglist = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        body.append(target);
+        for(int i = 0; i < bound.length; ++i) {
+            body.append(" ");
+            body.append(bound[i]);
+        }
+        for(int i = 0; i < arity; ++i) {
+            String sym = String.format("_i?%d!_", i);
+            arglist.append((i > 0) ? " " : "");
+            arglist.append(sym);
+            body.append(" ");
+            body.append(sym);
+        }
+        return String.format("(\\ (%s) (%s))", arglist, body);
+    }
+}
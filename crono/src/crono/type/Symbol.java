@@ -1,13 +1,37 @@
 package crono.type;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class Symbol extends Atom {
     public static final TypeId TYPEID = new TypeId(":symbol", Symbol.class,
                                                    Atom.TYPEID);
     
+    /* Every symbol is interned, so symbols compare by identity and hash by
+     * their dense integer id instead of by their name. */
+    private static final Map<String, Symbol> table =
+        new HashMap<String, Symbol>();
+    
+    /**
+     * Returns the canonical symbol for a name, creating it if needed.
+     * @param name The name of the symbol.
+     * @return The unique Symbol with the given name.
+     */
+    public static synchronized Symbol intern(String name) {
+        Symbol sym = table.get(name);
+        if(sym == null) {
+            sym = new Symbol(name, table.size());
+            table.put(name, sym);
+        }
+        return sym;
+    }
+    
     private final String name;
+    public final int id;
     
-    public Symbol(String name) {
+    private Symbol(String name, int id) {
         this.name = name;
+        this.id = id;
     }
     
     public TypeId typeId() {
@@ -18,6 +42,9 @@ public class Symbol extends Atom {
     }
     
     public boolean equals(Object o) {
-        return ((o instanceof Symbol) && ((Symbol)o).name.equals(name));
+        return (this == o);
+    }
+    public int hashCode() {
+        return id;
     }
 }
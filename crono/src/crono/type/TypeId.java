@@ -1,9 +1,27 @@
 package crono.type;
 
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
 public class TypeId {
     public final String image;
     public final Class type;
     public final TypeId parent;
+    /* The images of this type and all of its parents, as bits numbered by
+     * the order in which images were first seen */
+    private final BitSet images;
+    
+    private static final Map<String, Integer> numbers =
+        new HashMap<String, Integer>();
+    private static synchronized int number(String image) {
+        Integer n = numbers.get(image);
+        if(n == null) {
+            n = numbers.size();
+            numbers.put(image, n);
+        }
+        return n;
+    }
     
     public TypeId(String image, Class type) {
         this(image, type, null);
@@ -12,18 +30,21 @@ public class TypeId {
         this.type = type;
         this.image = image;
         this.parent = parent;
+        this.images = (parent == null) ? new BitSet() :
+            (BitSet)parent.images.clone();
+        this.images.set(number(image));
     }
     
+    /**
+     * Checks if an object is of this type.
+     * As with equals, two types match when any of the images up this type's
+     * parent chain is also somewhere up the other's; the ancestor images of
+     * both are precomputed, so this takes the same time at any depth.
+     * @param object The object to check.
+     * @return If object is of this type.
+     */
     public boolean isType(CronoType object) {
-        TypeId id = object.typeId();
-        while(id != null) {
-            if(this.equals(id)) {
-                return true;
-            }
-            id = id.parent;
-
-        }
-        return false;
+        return images.intersects(object.typeId().images);
     }
    
     public boolean equals(Object o) {
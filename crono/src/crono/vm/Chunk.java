@@ -0,0 +1,44 @@
+package crono.vm;
+
+/**
+ * A compiled Crono form: a flat array of instructions and the constants
+ * they refer to.
+ * @see Op
+ */
+public class Chunk {
+    public final int[] code;
+    public final Object[] pool;
+    public final int maxStack; /*< Deepest the operand stack gets */
+    
+    public Chunk(int[] code, Object[] pool, int maxStack) {
+        this.code = code;
+        this.pool = pool;
+        this.maxStack = maxStack;
+    }
+    
+    /**
+     * Lists the instructions of this chunk, one per line.
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int pc = 0;
+        while(pc < code.length) {
+            int op = code[pc];
+            builder.append(String.format("%4d %s", pc, Op.NAMES[op]));
+            for(int i = 1; i <= Op.OPERANDS[op]; ++i) {
+                builder.append(" ");
+                builder.append(code[pc + i]);
+            }
+            if(op == Op.CONST || op == Op.LOAD || op == Op.DEFINE ||
+               op == Op.LAMBDA || op == Op.DEFUN || op == Op.FORM ||
+               op == Op.TAIL_FORM || op == Op.GUARD || op == Op.TAIL_GUARD)
+            {
+                builder.append("\t; ");
+                builder.append(pool[code[pc + 1]]);
+            }
+            builder.append("\n");
+            pc += 1 + Op.OPERANDS[op];
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,308 @@
+package crono.vm;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import crono.CronoFunction;
+import crono.Environment;
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.CronoTypeId;
+import crono.type.Function;
+import crono.type.Nil;
+import crono.type.Quote;
+import crono.type.Symbol;
+
+/**
+ * Compiles parsed Crono code into Chunks for the VirtualMachine.
+ * If, while, define, lambda and defun are compiled to instructions when
+ * their head symbol refers to the builtin at the time the form is compiled
+ * and is not an argument of an enclosing lambda; the instructions are
+ * guarded by a check that it still does when they run. Let is compiled as the
+ * application of a lambda, which the let builtin would build, so that
+ * recursion through a let does not pass through the reference interpreter
+ * and the Java stack. All other applications
+ * are calls; builtins that take their arguments unevaluated are run by the
+ * reference interpreter when the call finds them.
+ */
+public class ChunkCompiler {
+    private final Environment env;
+    private final boolean lets; /*< If let forms are compiled */
+    private final List<Integer> code;
+    private final List<Object> pool;
+    private final Map<Object, Integer> constants; /*< Index of each */
+    private int depth, maxDepth;
+    
+    /**
+     * @param env The environment special forms are recognized in.
+     * @param lets If let forms should be compiled; when they are not, the
+     *             builtin runs them and reports each in debug output.
+     */
+    public ChunkCompiler(Environment env, boolean lets) {
+        this.env = env;
+        this.lets = lets;
+        this.code = new ArrayList<Integer>();
+        this.pool = new ArrayList<Object>();
+        this.constants = new IdentityHashMap<Object, Integer>();
+    }
+    
+    /**
+     * Compiles a top-level form.
+     * @param node The form.
+     * @param tail If the form is in tail position, so that a lambda applied
+     *             last may be returned as a TailCall.
+     */
+    public Chunk compile(CronoType node, boolean tail) {
+        return compile(new CronoType[]{node}, tail, new HashSet<Symbol>());
+    }
+    
+    private Chunk compile(CronoType[] body, boolean tail, Set<Symbol> bound) {
+        for(int i = 0; i < body.length; ++i) {
+            if(i > 0) {
+                emit(Op.POP, -1);
+            }
+            compile(body[i], tail && i == body.length - 1, bound);
+        }
+        emit(Op.RETURN, -1);
+        
+        int[] ops = new int[code.size()];
+        for(int i = 0; i < ops.length; ++i) {
+            ops[i] = code.get(i);
+        }
+        return new Chunk(ops, pool.toArray(), maxDepth);
+    }
+    
+    private void emit(int op, int change) {
+        code.add(op);
+        depth += change;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+    private void operand(int value) {
+        code.add(value);
+    }
+    private int constant(Object value) {
+        Integer index = constants.get(value);
+        if(index == null) {
+            index = pool.size();
+            pool.add(value);
+            constants.put(value, index);
+        }
+        return index;
+    }
+    /* Emits a jump whose target is filled in by land */
+    private int jump(int op, int change) {
+        emit(op, change);
+        operand(-1);
+        return code.size() - 1;
+    }
+    private void land(int operand) {
+        code.set(operand, code.size());
+    }
+    
+    private void compile(CronoType node, boolean tail, Set<Symbol> bound) {
+        if(node instanceof Quote) {
+            emit(Op.CONST, 1);
+            operand(constant(((Quote)node).node));
+        }else if(node instanceof Cons) {
+            compileCons((Cons)node, tail, bound);
+        }else if(node instanceof Symbol || (node instanceof CronoTypeId &&
+                                            !((CronoTypeId)node).complete()))
+        {
+            emit(Op.LOAD, 1);
+            operand(constant(node));
+        }else {
+            emit(Op.CONST, 1);
+            operand(constant(node));
+        }
+    }
+    
+    private void compileCons(Cons c, boolean tail, Set<Symbol> bound) {
+        if(!(c.iterator().hasNext())) {
+            emit(Op.CONST, 1);
+            operand(constant(c)); /*< Nil or T */
+            return;
+        }
+        List<CronoType> list = c.toList();
+        CronoType head = list.get(0);
+        CronoType[] args = list.subList(1, list.size())
+            .toArray(new CronoType[list.size() - 1]);
+        
+        if(head instanceof Symbol && !bound.contains(head)) {
+            CronoType fun = env.get((Symbol)head);
+            if(fun instanceof Function &&
+               ((Function)fun).eval == Function.EvalType.NONE)
+            {
+                /* As in the interpreter, a quoted argument to a form that
+                 * does not evaluate its arguments loses the quote */
+                for(int i = 0; i < args.length; ++i) {
+                    if(args[i] instanceof Quote) {
+                        args[i] = ((Quote)args[i]).node;
+                    }
+                }
+            }
+            if(fun instanceof Function) {
+                /* The head may be redefined once this is compiled */
+                int start = code.size();
+                emit(tail ? Op.TAIL_GUARD : Op.GUARD, 0);
+                operand(constant(c));
+                operand(constant(fun));
+                int skip = code.size();
+                operand(-1);
+                if(compileSpecial(fun, args, tail, bound)) {
+                    land(skip);
+                    return;
+                }
+                code.subList(start, code.size()).clear(); /*< Not special */
+            }
+        }
+        
+        compile(head, false, bound);
+        emit(tail ? Op.TAIL_FORM : Op.FORM, 0);
+        operand(constant(c));
+        int skip = code.size();
+        operand(-1);
+        for(int i = 0; i < args.length; ++i) {
+            compile(args[i], false, bound);
+        }
+        emit(tail ? Op.TAIL_CALL : Op.CALL, -args.length);
+        operand(args.length);
+        land(skip);
+    }
+    
+    /**
+     * Compiles the special forms that have instructions.
+     * @return If the form was compiled; malformed forms are compiled as
+     *         calls so that errors are reported by the builtin.
+     */
+    private boolean compileSpecial(CronoType fun, CronoType[] args,
+                                   boolean tail, Set<Symbol> bound)
+    {
+        if(fun == CronoFunction.IF.function && args.length == 3) {
+            compile(args[0], false, bound);
+            int otherwise = jump(Op.JUMP_NIL, -1);
+            compile(args[1], tail, bound);
+            int done = jump(Op.JUMP, -1);
+            land(otherwise);
+            compile(args[2], tail, bound);
+            land(done);
+            return true;
+        }
+        if(fun == CronoFunction.WHILE.function && args.length == 2) {
+            emit(Op.CONST, 1);
+            operand(constant(Nil.NIL));
+            int loop = code.size();
+            compile(args[0], false, bound);
+            int done = jump(Op.JUMP_NIL, -1);
+            emit(Op.POP, -1);
+            compile(args[1], false, bound);
+            emit(Op.JUMP, 0);
+            operand(loop);
+            land(done);
+            return true;
+        }
+        if(fun == CronoFunction.DEFINE.function && args.length == 2 &&
+           args[0] instanceof Symbol)
+        {
+            compile(args[1], false, bound);
+            emit(Op.DEFINE, 0);
+            operand(constant(args[0]));
+            return true;
+        }
+        if(fun == CronoFunction.LAMBDA.function && args.length >= 2) {
+            Template lambda = template(null, args[0], rest(args, 1), bound);
+            if(lambda == null) {
+                return false;
+            }
+            emit(Op.LAMBDA, 1);
+            operand(constant(lambda));
+            return true;
+        }
+        if(fun == CronoFunction.DEFUN.function && args.length >= 3 &&
+           args[0] instanceof Symbol)
+        {
+            Template lambda = template((Symbol)args[0], args[1],
+                                       rest(args, 2), bound);
+            if(lambda == null) {
+                return false;
+            }
+            emit(Op.DEFUN, 1);
+            operand(constant(lambda));
+            return true;
+        }
+        if(lets && fun == CronoFunction.LET.function && args.length >= 2) {
+            return let(args, tail, bound);
+        }
+        return false;
+    }
+    
+    /* Compiles (let ((x a) (y b)) body) as ((\ (x y) body) a b) */
+    private boolean let(CronoType[] args, boolean tail, Set<Symbol> bound) {
+        if(!(args[0] instanceof Cons) || args[0] == Nil.NIL) {
+            return false;
+        }
+        List<CronoType> names = new ArrayList<CronoType>();
+        List<CronoType> values = new ArrayList<CronoType>();
+        for(CronoType pair : (Cons)args[0]) {
+            if(!(pair instanceof Cons) || pair == Nil.NIL) {
+                return false;
+            }
+            List<CronoType> items = ((Cons)pair).toList();
+            if(items.size() != 2 || !(items.get(0) instanceof Symbol)) {
+                return false;
+            }
+            names.add(items.get(0));
+            values.add(items.get(1));
+        }
+        
+        Template lambda = template(null, Cons.fromList(names), rest(args, 1),
+                                   bound);
+        if(lambda == null) {
+            return false;
+        }
+        emit(Op.LAMBDA, 1);
+        operand(constant(lambda));
+        for(CronoType value : values) {
+            compile(value, false, bound);
+        }
+        emit(tail ? Op.TAIL_CALL : Op.CALL, -values.size());
+        operand(values.size());
+        return true;
+    }
+    
+    private Template template(Symbol name, CronoType args, CronoType[] body,
+                              Set<Symbol> bound)
+    {
+        if(!(args instanceof Cons)) {
+            return null;
+        }
+        List<CronoType> items = new ArrayList<CronoType>();
+        if(args != Nil.NIL) {
+            items = ((Cons)args).toList();
+        }
+        Symbol[] arglist = new Symbol[items.size()];
+        for(int i = 0; i < arglist.length; ++i) {
+            if(!(items.get(i) instanceof Symbol)) {
+                return null;
+            }
+            arglist[i] = (Symbol)items.get(i);
+        }
+        
+        Set<Symbol> inner = new HashSet<Symbol>(bound);
+        for(int i = 0; i < arglist.length; ++i) {
+            inner.add(arglist[i]);
+        }
+        Chunk chunk = new ChunkCompiler(env, lets).compile(body, true,
+                                                       inner);
+        return new Template(name, arglist, body, chunk);
+    }
+    
+    private static CronoType[] rest(CronoType[] args, int start) {
+        CronoType[] rest = new CronoType[args.length - start];
+        System.arraycopy(args, start, rest, 0, rest.length);
+        return rest;
+    }
+}
@@ -0,0 +1,27 @@
+package crono.vm;
+
+import crono.type.CronoType;
+
+/**
+ * A suspended chunk, waiting for the closure it called to return.
+ * The VirtualMachine keeps these on the heap instead of calling itself on
+ * the Java stack, so the depth of non-tail recursion between compiled
+ * closures is limited only by memory.
+ */
+class Continuation {
+    final Chunk chunk;
+    final CronoType[] stack;
+    final int sp; /*< The callee's result goes in stack[sp - 1] */
+    final int pc;
+    final Continuation caller;
+    
+    Continuation(Chunk chunk, CronoType[] stack, int sp, int pc,
+                 Continuation caller)
+    {
+        this.chunk = chunk;
+        this.stack = stack;
+        this.sp = sp;
+        this.pc = pc;
+        this.caller = caller;
+    }
+}
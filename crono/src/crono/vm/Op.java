@@ -0,0 +1,62 @@
+package crono.vm;
+
+/**
+ * The instructions of the Crono virtual machine.
+ * Operands follow their opcode in the code array; pool operands are indices
+ * into the constant pool of the Chunk, and jump operands are absolute
+ * positions in the code array.
+ */
+public final class Op {
+    /** Push pool[k]. Operand: k */
+    public static final int CONST = 0;
+    /** Push the value of the atom pool[k] in the environment. Operand: k */
+    public static final int LOAD = 1;
+    /** Discard the top of the stack. */
+    public static final int POP = 2;
+    /** Continue at position a. Operand: a */
+    public static final int JUMP = 3;
+    /** Pop a value, and continue at position a if it is Nil. Operand: a */
+    public static final int JUMP_NIL = 4;
+    /** Bind the symbol pool[k] to the top of the stack. Operand: k */
+    public static final int DEFINE = 5;
+    /** Push a closure of the Template pool[k]. Operand: k */
+    public static final int LAMBDA = 6;
+    /** Bind a closure of the Template pool[k] to its name. Operand: k */
+    public static final int DEFUN = 7;
+    /**
+     * Check that the top of the stack is a function. If it does not take
+     * evaluated arguments, replace it with the result of running the form
+     * pool[k] through the reference interpreter and continue at position a.
+     * Operands: k, a
+     */
+    public static final int FORM = 8;
+    /** As FORM, for a form in tail position. Operands: k, a */
+    public static final int TAIL_FORM = 9;
+    /** Apply the function below the top n values to them. Operand: n */
+    public static final int CALL = 10;
+    /** As CALL, for a call in tail position. Operand: n */
+    public static final int TAIL_CALL = 11;
+    /** Return the top of the stack. */
+    public static final int RETURN = 12;
+    /**
+     * Check that the head of the form pool[k] still refers to the builtin
+     * pool[f] that the instructions after this one were compiled for. If
+     * not, push the result of running the form through the reference
+     * interpreter and continue at position a.
+     * Operands: k, f, a
+     */
+    public static final int GUARD = 13;
+    /** As GUARD, for a form in tail position. Operands: k, f, a */
+    public static final int TAIL_GUARD = 14;
+    
+    static final String[] NAMES = {
+        "const", "load", "pop", "jump", "jump-nil", "define", "lambda",
+        "defun", "form", "tail-form", "call", "tail-call", "return",
+        "guard", "tail-guard",
+    };
+    static final int[] OPERANDS = {1, 1, 0, 1, 1, 1, 1, 1, 2, 2, 1, 1, 0, 3,
+                                   3};
+    
+    private Op() {
+    }
+}
@@ -0,0 +1,28 @@
+package crono.vm;
+
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * A lambda as it appears in compiled code; the LAMBDA and DEFUN
+ * instructions make closures from it.
+ */
+public class Template {
+    public final Symbol name; /*< Null unless defined by a defun */
+    public final Symbol[] arglist;
+    public final CronoType[] body;
+    public final Chunk chunk;
+    
+    public Template(Symbol name, Symbol[] arglist, CronoType[] body,
+                    Chunk chunk)
+    {
+        this.name = name;
+        this.arglist = arglist;
+        this.body = body;
+        this.chunk = chunk;
+    }
+    
+    public String toString() {
+        return String.format("<lambda %s>", (name == null) ? "" : name);
+    }
+}
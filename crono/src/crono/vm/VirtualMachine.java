@@ -0,0 +1,418 @@
+package crono.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import crono.Environment;
+import crono.Interpreter;
+import crono.InterpreterException;
+import crono.SymbolScopeException;
+import crono.TailCall;
+import crono.TooManyArgsException;
+import crono.TypeScopeException;
+import crono.type.Atom;
+import crono.type.Cons;
+import crono.type.CronoType;
+import crono.type.CronoTypeId;
+import crono.type.Function;
+import crono.type.Function.EvalType;
+import crono.type.LambdaFunction;
+import crono.type.Nil;
+import crono.type.PartialApplication;
+import crono.type.Symbol;
+
+/**
+ * An Interpreter that compiles each form it is asked to evaluate into a
+ * Chunk of instructions and runs it in a dispatch loop.
+ * Variables are looked up by name in the environment, as the reference
+ * Interpreter does. Calls of compiled closures never grow the Java stack:
+ * a call in tail position reuses the running loop, and any other call
+ * suspends the caller in a Continuation kept on the heap, so recursion is
+ * limited by memory rather than by the thread's stack. The reference Visitor
+ * implementation is still used for dynamic scoping, tracing, AST printing
+ * and environment reporting, and for builtins that take their arguments
+ * unevaluated.
+ */
+public class VirtualMachine extends Interpreter {
+    private static final String _not_function =
+        "Invalid Function Application: %s is not a function in %s";
+    
+    /* Forms compiled in and out of tail position */
+    private final Map<Cons, Chunk> compiled, compiledTail;
+    
+    public VirtualMachine() {
+        super();
+        compiled = new WeakHashMap<Cons, Chunk>();
+        compiledTail = new WeakHashMap<Cons, Chunk>();
+    }
+    /**
+     * Creates a VirtualMachine that takes over the options and environment
+     * of an existing Interpreter.
+     * @param base The Interpreter to copy.
+     */
+    public VirtualMachine(Interpreter base) {
+        super(base);
+        compiled = new WeakHashMap<Cons, Chunk>();
+        compiledTail = new WeakHashMap<Cons, Chunk>();
+    }
+    
+    /**
+     * Compiles and runs a cons node.
+     * Only fully evaluated forms are compiled; anything else, or any form
+     * visited while an instrumentation option is on, goes to the reference
+     * implementation.
+     * @param c The Cons node to visit.
+     * @return The value obtained by running the compiled chunk.
+     */
+    public CronoType visit(Cons c) {
+        if(eval != EvalType.FULL || dynamic || trace || printAST || showEnv) {
+            return super.visit(c);
+        }
+        boolean tailpos = tail;
+        tail = false;
+        
+        Map<Cons, Chunk> cache = tailpos ? compiledTail : compiled;
+        Chunk chunk = cache.get(c);
+        if(chunk == null) {
+            chunk = new ChunkCompiler(getEnv(), !debug).compile(c, tailpos);
+            cache.put(c, chunk);
+        }
+        
+        int depth = envStack.size();
+        try {
+            return execute(chunk, false);
+        }catch(RuntimeException re) {
+            unwind(depth);
+            except(re);
+        }
+        return null;
+    }
+    
+    /**
+     * Runs a compiled closure.
+     * @param closure The closure.
+     * @param args Values for every argument.
+     * @return The result, which may be a TailCall of another lambda.
+     */
+    public CronoType call(VmClosure closure, CronoType[] args) {
+        int depth = envStack.size();
+        pushEnv(closure.frame(args));
+        try {
+            return execute(closure.chunk, true);
+        }catch(RuntimeException re) {
+            unwind(depth);
+            throw re;
+        }finally {
+            envStack.setSize(depth); /*< Also the frames of callees */
+        }
+    }
+    
+    /**
+     * The dispatch loop.
+     * @param chunk The chunk to run.
+     * Calls of compiled closures run in this loop: the caller is suspended
+     * in a Continuation, and resumed when the callee returns.
+     * @param body If the chunk is the body of a closure called by call; a
+     *             tail call of a compiled closure then replaces the body.
+     */
+    private CronoType execute(Chunk chunk, boolean body) {
+        int[] code = chunk.code;
+        Object[] pool = chunk.pool;
+        CronoType[] stack = new CronoType[chunk.maxStack];
+        int sp = 0, pc = 0;
+        Continuation caller = null;
+        
+        while(true) {
+            switch(code[pc++]) {
+            case Op.CONST:
+                stack[sp++] = (CronoType)pool[code[pc++]];
+                break;
+            case Op.LOAD:
+                stack[sp++] = load((Atom)pool[code[pc++]]);
+                break;
+            case Op.POP:
+                stack[--sp] = null;
+                break;
+            case Op.JUMP:
+                pc = code[pc];
+                break;
+            case Op.JUMP_NIL:
+                pc = (stack[--sp] == Nil.NIL) ? code[pc] : pc + 1;
+                break;
+            case Op.DEFINE:
+                getEnv().put((Symbol)pool[code[pc++]], stack[sp - 1]);
+                break;
+            case Op.LAMBDA:
+                stack[sp++] = closure((Template)pool[code[pc++]]);
+                break;
+            case Op.DEFUN:
+                stack[sp++] = defun((Template)pool[code[pc++]]);
+                break;
+            case Op.FORM:
+            case Op.TAIL_FORM: {
+                CronoType value = stack[sp - 1];
+                Cons form = (Cons)pool[code[pc++]];
+                if(!(value instanceof Function)) {
+                    throw new InterpreterException(_not_function, value,
+                                                   form);
+                }
+                Function fun = (Function)value;
+                if(fun.eval != EvalType.FULL) {
+                    /* In tail position this may return a TailCall */
+                    tail = (code[pc - 2] == Op.TAIL_FORM);
+                    stack[sp - 1] = super.visit(new Cons(fun, form.cdr()));
+                    pc = code[pc];
+                }else {
+                    pc++;
+                }
+                break;
+            }
+            case Op.GUARD:
+            case Op.TAIL_GUARD: {
+                Cons form = (Cons)pool[code[pc++]];
+                Function fun = (Function)pool[code[pc++]];
+                CronoType value = load((Atom)form.car());
+                if(value == fun) {
+                    pc++;
+                    break;
+                }
+                if(!(value instanceof Function)) {
+                    throw new InterpreterException(_not_function, value,
+                                                   form);
+                }
+                /* Redefined; run the form as the interpreter would */
+                tail = (code[pc - 3] == Op.TAIL_GUARD);
+                stack[sp++] = super.visit(new Cons(value, form.cdr()));
+                pc = code[pc];
+                break;
+            }
+            case Op.CALL: {
+                int n = code[pc++];
+                sp -= n;
+                Function fun = (Function)stack[sp - 1];
+                if(fixed(fun, n)) {
+                    stack[sp - 1] = apply(fun, stack, sp);
+                    break;
+                }
+                CronoType[] args = new CronoType[n];
+                System.arraycopy(stack, sp, args, 0, n);
+                if(!(fun instanceof VmClosure) || n != fun.arity) {
+                    stack[sp - 1] = apply(fun, args);
+                    break;
+                }
+                /* Suspend this chunk and run the callee's body */
+                VmClosure closure = (VmClosure)fun;
+                caller = new Continuation(chunk, stack, sp, pc, caller);
+                pushEnv(closure.frame(args));
+                chunk = closure.chunk;
+                code = chunk.code;
+                pool = chunk.pool;
+                stack = new CronoType[chunk.maxStack];
+                sp = 0;
+                pc = 0;
+                break;
+            }
+            case Op.TAIL_CALL: {
+                int n = code[pc++];
+                sp -= n;
+                Function fun = (Function)stack[sp - 1];
+                if(fixed(fun, n)) {
+                    stack[sp - 1] = apply(fun, stack, sp);
+                    break;
+                }
+                CronoType[] args = new CronoType[n];
+                System.arraycopy(stack, sp, args, 0, n);
+                if(!(fun instanceof LambdaFunction) || n != fun.arity) {
+                    stack[sp - 1] = apply(fun, args);
+                    break;
+                }
+                if(!(fun instanceof VmClosure) || (!body && caller == null)) {
+                    /* Returned to, or resolved by, whoever called */
+                    stack[sp - 1] = new TailCall((LambdaFunction)fun, args);
+                    break;
+                }
+                /* Replace the running body with the callee */
+                VmClosure closure = (VmClosure)fun;
+                popEnv();
+                pushEnv(closure.frame(args));
+                chunk = closure.chunk;
+                code = chunk.code;
+                pool = chunk.pool;
+                if(stack.length < chunk.maxStack) {
+                    stack = new CronoType[chunk.maxStack];
+                }
+                sp = 0;
+                pc = 0;
+                break;
+            }
+            case Op.RETURN: {
+                CronoType value = stack[sp - 1];
+                if(value instanceof TailCall && (body || caller != null) &&
+                   ((TailCall)value).fun instanceof VmClosure)
+                {
+                    /* A tail call left by a form; run it in place */
+                    TailCall call = (TailCall)value;
+                    VmClosure closure = (VmClosure)call.fun;
+                    popEnv();
+                    pushEnv(closure.frame(call.args));
+                    chunk = closure.chunk;
+                    code = chunk.code;
+                    pool = chunk.pool;
+                    if(stack.length < chunk.maxStack) {
+                        stack = new CronoType[chunk.maxStack];
+                    }
+                    sp = 0;
+                    pc = 0;
+                    break;
+                }
+                if(caller == null) {
+                    return value;
+                }
+                
+                /* Resume the suspended caller with the result */
+                value = TailCall.resolve(this, value);
+                popEnv();
+                chunk = caller.chunk;
+                code = chunk.code;
+                pool = chunk.pool;
+                stack = caller.stack;
+                sp = caller.sp;
+                pc = caller.pc;
+                caller = caller.caller;
+                stack[sp - 1] = value;
+                break;
+            }
+            }
+        }
+    }
+    
+    /* As Interpreter.visit(Atom) with full evaluation */
+    private CronoType load(Atom a) {
+        CronoType t = a;
+        if(t instanceof Symbol) {
+            t = getEnv().get((Symbol)a);
+            if(t == null) {
+                throw new SymbolScopeException((Symbol)a);
+            }
+        }
+        if(t instanceof CronoTypeId && !((CronoTypeId)t).complete()) {
+            CronoType res = t;
+            t = getEnv().getType((CronoTypeId)t);
+            if(t == null) {
+                throw new TypeScopeException(((CronoTypeId)res).type);
+            }
+        }
+        return t;
+    }
+    
+    /* As the lambda and defun builtins */
+    private VmClosure closure(Template lambda) {
+        return new VmClosure(LambdaFunction.capture(lambda.arglist,
+                                                    lambda.body, getEnv()),
+                             lambda.chunk);
+    }
+    private VmClosure defun(Template lambda) {
+        VmClosure closure = closure(lambda);
+        Environment env = getEnv();
+        env.put(lambda.name, closure);
+        if(!env.isGlobal()) {
+            closure.environment.put(lambda.name, closure);
+        }
+        return closure;
+    }
+    
+    /**
+     * Applies a function to already evaluated arguments.
+     * Follows the same rules as Interpreter.visit(Cons): functions given too
+     * few arguments are curried, and builtins have their argument types
+     * checked.
+     * @param fun The function to apply.
+     * @param args The evaluated arguments.
+     * @return The result of the application.
+     */
+    public CronoType apply(Function fun, CronoType[] args) {
+        int arglen = args.length;
+        int nargs = fun.arity;
+        if(arglen < nargs) {
+            if(arglen == 0) {
+                return fun;
+            }
+            return curry(fun, args);
+        }
+        if(arglen > nargs && !fun.variadic) {
+            throw new TooManyArgsException(fun, arglen, nargs, args);
+        }
+        if(fun instanceof VmClosure) {
+            return TailCall.resolve(this, call((VmClosure)fun, args));
+        }
+        if(!(fun instanceof LambdaFunction)) {
+            checkTypes(fun, args);
+        }
+        return TailCall.resolve(this, fun.run(this, args));
+    }
+    
+    /* If a call can go through the fixed-arity entry points */
+    private static boolean fixed(Function fun, int n) {
+        return (n == fun.arity && n <= 3 && !fun.variadic &&
+                !(fun instanceof LambdaFunction));
+    }
+    /**
+     * Applies a builtin to exactly as many arguments as it takes, at most
+     * three, straight from the operand stack.
+     * No argument array is built unless a type check fails.
+     * @param fun A builtin that fully evaluates its arguments.
+     * @param stack The operand stack.
+     * @param base Where the arguments start on the stack.
+     * @return The result of the application.
+     */
+    private CronoType apply(Function fun, CronoType[] stack, int base) {
+        int n = fun.arity;
+        CronoType first = (n > 0) ? stack[base] : null;
+        CronoType second = (n > 1) ? stack[base + 1] : null;
+        CronoType third = (n > 2) ? stack[base + 2] : null;
+        if(fun.checked && !((n < 1 || fun.accepts(0, first)) &&
+                            (n < 2 || fun.accepts(1, second)) &&
+                            (n < 3 || fun.accepts(2, third))))
+        {
+            checkTypes(fun, Arrays.copyOfRange(stack, base, base + n));
+        }
+        CronoType result;
+        if(n == 0) {
+            result = fun.run0(this);
+        }else if(n == 1) {
+            result = fun.run1(this, first);
+        }else if(n == 2) {
+            result = fun.run2(this, first, second);
+        }else {
+            result = fun.run3(this, first, second, third);
+        }
+        return TailCall.resolve(this, result);
+    }
+    
+    private Function curry(Function fun, CronoType[] args) {
+        if(fun instanceof LambdaFunction) {
+            return ((LambdaFunction)fun).curry(args);
+        }
+        if(fun.eval == EvalType.FULL) {
+            return new PartialApplication(fun, args);
+        }
+        
+        /* Builtin partial application */
+        List<CronoType> body = new ArrayList<CronoType>();
+        body.add(fun);
+        for(int i = 0; i < args.length; ++i) {
+            body.add(args[i]);
+        }
+        Symbol[] arglist = new Symbol[fun.arity - args.length];
+        for(int i = 0; i < arglist.length; ++i) {
+            arglist[i] = Symbol.intern(String.format("_i?%d!_", i));
+            body.add(arglist[i]);
+        }
+        return new LambdaFunction(arglist,
+                                  new CronoType[]{Cons.fromList(body)},
+                                  getEnv());
+    }
+}
@@ -0,0 +1,47 @@
+package crono.vm;
+
+import crono.Environment;
+import crono.Visitor;
+import crono.type.CronoType;
+import crono.type.LambdaFunction;
+import crono.type.Symbol;
+
+/**
+ * A LambdaFunction whose body has been compiled to a Chunk.
+ * Run by a VirtualMachine, the chunk is executed in the closure's
+ * environment with the arguments bound; any other Visitor visits the body.
+ */
+public class VmClosure extends LambdaFunction {
+    public final Chunk chunk;
+    
+    public VmClosure(LambdaFunction fun, Chunk chunk) {
+        super(fun);
+        this.chunk = chunk;
+    }
+    private VmClosure(Symbol[] args, CronoType[] body, Environment env,
+                      Chunk chunk)
+    {
+        super(args, body, env);
+        this.chunk = chunk;
+    }
+    
+    /**
+     * Creates the environment of a call of this closure.
+     * @param args Values for every argument.
+     */
+    public Environment frame(CronoType[] args) {
+        return bind(environment, args);
+    }
+    
+    public LambdaFunction curry(CronoType[] args) {
+        return new VmClosure(remaining(args.length), body,
+                             bind(environment, args), chunk);
+    }
+    
+    public CronoType run(Visitor v, CronoType[] args) {
+        if(v instanceof VirtualMachine) {
+            return ((VirtualMachine)v).call(this, args);
+        }
+        return super.run(v, args);
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Lambda application binds arguments without rewriting the body, so the
+ * same body must give fresh results every call.
+ */
+public class ApplyTest extends CronoTestCase {
+  public void testRepeatedCalls() throws Exception {
+    check("25", "(define sq (\\ (x) (* x x))) (+ (sq 3) (sq 4))");
+  }
+
+  public void testShadowedParameter() throws Exception {
+    check("2", "(define f (\\ (x) (\\ (x) (+ x 1)))) ((f 10) 1)");
+  }
+
+  public void testBodyIsNotRewritten() throws Exception {
+    check("(\\ (y) (+ x y))",
+          "(define f (\\ (x) (\\ (y) (+ x y)))) (f 10)");
+  }
+
+  public void testClosuresAreIndependent() throws Exception {
+    String program = "(define f (\\ (x) (\\ (y) (+ x y))))" +
+      "(define g (f 10)) (define h (f 20)) (+ (g 1) (h 1))";
+    check(LEXICAL, "32", program);
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * The specialized arithmetic paths must give the results of the generic
+ * builtins for every mix of operand types.
+ */
+public class ArithmeticTest extends CronoTestCase {
+  public void testIntegers() throws Exception {
+    check("3", "(+ 1 2)");
+    check("3", "(/ 7 2)");
+    check("-9223372036854775808", "(+ 9223372036854775807 1)");
+  }
+
+  public void testMixed() throws Exception {
+    check("3.5", "(+ 1 2.5)");
+    check("3.5", "(+ 2.5 1)");
+    check("1.5", "(* 3 0.5)");
+    check("0.5", "(- 1 0.5)");
+    check("3.5", "(/ 7.0 2)");
+  }
+
+  public void testComparison() throws Exception {
+    check("#t", "(< 1 2)");
+    check("Nil", "(< 2 1.5)");
+    check("#t", "(> 2.5 2)");
+    check("#t", "(< 'a' 'b')");
+    check("Nil", "(= 1 1.0)");
+  }
+
+  public void testConversion() throws Exception {
+    check("2", "(int 2.7)");
+    check("3.0", "(float 3)");
+  }
+
+  public void testBadOperand() throws Exception {
+    checkError("(+ 'a' 1)");
+    checkError("(+ 1 (cons 1 2))");
+  }
+
+  public void testTypesChangeAtCallSite() throws Exception {
+    String program = "(defun avg (a b) (/ (+ a b) 2))" +
+      "(cons (avg 1 2) (avg 1.0 2))";
+    check("(1 . 1.5)", program);
+  }
+
+  public void testHotLoop() throws Exception {
+    String sum = "(defun sum (i acc)" +
+      "  (if (= i 0) acc (sum (- i 1) (+ acc i))))";
+    check("4501500", sum + "(sum 3000 0)");
+    String half = "(defun loop (i acc)" +
+      "  (if (= i 0) acc (loop (- i 1) (+ acc 0.5))))";
+    check("1500.0", half + "(loop 3000 0)");
+  }
+}
@@ -0,0 +1,91 @@
+import crono.CronoFunction;
+import crono.Interpreter;
+import crono.Visitor;
+import crono.type.Cons;
+import crono.type.CronoFloat;
+import crono.type.CronoInteger;
+import crono.type.CronoType;
+import crono.type.Function;
+import crono.type.Nil;
+import crono.type.Symbol;
+import crono.type.TypeId;
+
+/**
+ * The fixed-arity entry points of the builtins must agree with run.
+ */
+public class BuiltinCallTest extends CronoTestCase {
+  private static final CronoFunction[] BINARY = {
+    CronoFunction.CONS, CronoFunction.EQ, CronoFunction.LT,
+    CronoFunction.GT, CronoFunction.ADD, CronoFunction.SUB,
+    CronoFunction.MUL, CronoFunction.DIV,
+  };
+  private static final CronoType[] VALUES = {
+    new CronoInteger(6), new CronoInteger(-4), new CronoFloat(2.5),
+  };
+
+  public void testRun2() throws Exception {
+    Interpreter v = new Interpreter();
+    for(CronoFunction cf : BINARY) {
+      Function fun = cf.function;
+      for(CronoType a : VALUES) {
+        for(CronoType b : VALUES) {
+          assertEquals(cf + " " + a + " " + b,
+                       fun.run(v, new CronoType[]{a, b}),
+                       fun.run2(v, a, b));
+        }
+      }
+    }
+  }
+
+  public void testRun1() throws Exception {
+    Interpreter v = new Interpreter();
+    CronoType list = new Cons(new CronoInteger(1), new Cons(
+                              new CronoInteger(2), Nil.NIL));
+    for(CronoFunction cf : new CronoFunction[]{CronoFunction.CAR,
+                                               CronoFunction.CDR})
+    {
+      Function fun = cf.function;
+      assertEquals(cf.toString(), fun.run(v, new CronoType[]{list}),
+                   fun.run1(v, list));
+    }
+  }
+
+  public void testArgumentsAreNotShared() throws Exception {
+    String program = "(defun f (x) (cons x Nil)) (cons (f 1) (f 2))";
+    check("((1) 2)", program);
+  }
+
+  public void testArity() throws Exception {
+    checkError("(car (cons 1 2) 3)");
+    check("(1 . 3)", "((cons 1) 3)");
+  }
+
+  /* A builtin that can only be applied through run2 */
+  private static final Function PAIR =
+    new Function(new TypeId[]{CronoInteger.TYPEID, CronoType.TYPEID},
+                 Cons.TYPEID, 2)
+  {
+    public CronoType run(Visitor v, CronoType[] args) {
+      throw new AssertionError("argument array built");
+    }
+    public CronoType run2(Visitor v, CronoType first, CronoType second) {
+      return new Cons(first, second);
+    }
+    public String toString() {
+      return "pair";
+    }
+  };
+
+  public void testExactCallsUseRun2() throws Exception {
+    for(String options : ENGINES) {
+      Visitor v = visitor(options);
+      v.getEnv().put(Symbol.intern("pair"), PAIR);
+      assertEquals(options, "(1 . 2)",
+                   run(v, "(pair 1 2)", false).repr());
+      assertEquals(options, "(1 . 2)",
+                   run(v, "((pair 1) 2)", false).repr());
+      assertEquals(options, "(3 . 4)",
+                   run(v, "(defun f (x) (pair x 4)) (f 3)", false).repr());
+    }
+  }
+}
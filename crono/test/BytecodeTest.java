@@ -0,0 +1,73 @@
+import crono.Visitor;
+import crono.compiler.Body;
+import crono.compiler.Closure;
+
+/**
+ * Bodies run more than Body.PROMOTE times are translated to bytecode, and
+ * must keep giving the results they gave as nodes.
+ */
+public class BytecodeTest extends CronoTestCase {
+  /* Calls f with 1 to n and lists the results; the list is built by the
+   * compiled body of loop once it has been promoted as well */
+  private static final String LOOP =
+    "(defun loop (i acc) (if (= i 0) acc (loop (- i 1) (cons (f i) acc))))";
+  private static final int CALLS = Body.PROMOTE + 200;
+
+  /**
+   * Runs f CALLS times under -c, checks that its body was promoted, and
+   * compares the results with those of the reference interpreter.
+   * @param defun The definition of f.
+   */
+  private void promote(String defun) throws Exception {
+    String program = defun + LOOP + "(loop " + CALLS + " Nil)";
+    Visitor v = visitor("-c");
+    String compiled = run(v, program, false).repr();
+    Closure f = (Closure)run(v, "f", false);
+    assertTrue(defun, f.code.promoted());
+    assertEquals(defun, eval("", program), compiled);
+  }
+
+  public void testArithmetic() throws Exception {
+    promote("(defun f (x) (+ (* x x) (- x 1)))");
+    promote("(defun f (x) (/ (float x) 4))");
+  }
+
+  public void testIf() throws Exception {
+    promote("(defun f (x) (if (< x 500) x (cons x Nil)))");
+  }
+
+  public void testLet() throws Exception {
+    promote("(defun f (x) (let ((y (* x 2)) (z 3)) (+ y z)))");
+    promote("(defun f (x)" +
+            "  (letrec ((g (\\ (n) (if (= n 0) 0 (+ 1 (g (- n 1)))))))" +
+            "    (g (- x (* 10 (/ x 10))))))");
+  }
+
+  public void testClosure() throws Exception {
+    promote("(defun f (x) ((\\ (y) (+ x y)) 1))");
+    promote("(defun f (x) (let ((g (\\ (y) (* x y)))) (g 2)))");
+  }
+
+  public void testLocalDefine() throws Exception {
+    promote("(defun f (x) (define y (+ x 1)) (* y 2))");
+  }
+
+  public void testTry() throws Exception {
+    promote("(defun f (x) (try e (if (< x 600) (raise x) 0) (- 0 e)))");
+    promote("(defun f (x) (+ (try e (define x 5) e) x))");
+  }
+
+  public void testGlobal() throws Exception {
+    promote("(define k 7) (defun f (x) (+ x k))");
+  }
+
+  public void testCurrying() throws Exception {
+    promote("(define add (\\ (a b) (+ a b))) (defun f (x) ((add x) 1))");
+    promote("(defun f (x) ((+ x) 1))");
+  }
+
+  public void testWhile() throws Exception {
+    promote("(defun f (x) (define n 0)" +
+            "  (while (< n 3) (define n (+ n 1))) (+ x n))");
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * A call site must dispatch every function it sees as it would without a
+ * cache, however many it sees and however they were curried.
+ */
+public class CallSiteCacheTest extends CronoTestCase {
+  /* The call (f x) is the call site under test */
+  private static final String AP = "(defun ap (f x) (f x))";
+
+  public void testMegamorphic() throws Exception {
+    String program = AP +
+      "(define fs (cons (+ 1) (cons (* 2) (cons (- 10)" +
+      "  (cons (\\ (y) (* y y)) (cons (cons 3) (cons (< 4) Nil)))))))" +
+      "(defun each (l)" +
+      "  (if (= l Nil) Nil (cons (ap (car l) 5) (each (cdr l)))))" +
+      "(each fs)";
+    check("(6 10 5 25 (3 . 5) #t)", program);
+  }
+
+  public void testCurriedClosures() throws Exception {
+    String program = AP + "(define add (\\ (a b) (+ a b)))" +
+      "(cons (ap (add 1) 1) (cons (ap (add 10) 1) (ap (\\ (z) z) 1)))";
+    check("(2 11 . 1)", program);
+  }
+
+  public void testCurriedArity() throws Exception {
+    /* The same body, curried to different arities */
+    String program = AP + "(define add3 (\\ (a b c) (+ a (+ b c))))" +
+      "(cons (ap (add3 1 2) 3) (ap (add3 1) 3))";
+    check("(6 . (\\ (c) (+ a (+ b c))))", program);
+  }
+
+  public void testRedefinition() throws Exception {
+    String program = "(defun g (x) 1) (defun h (x) (g x)) (define a (h 0))" +
+      "(defun g (x) 2) (cons a (h 0))";
+    check("(1 . 2)", program);
+  }
+
+  public void testHotAlternation() throws Exception {
+    String program = AP + "(define add3 (\\ (a b c) (+ a (+ b c))))" +
+      "(defun loop (i acc)" +
+      "  (if (= i 0) acc" +
+      "    (loop (- i 1)" +
+      "          (+ acc (ap (if (= 0 (- i (* 2 (/ i 2))))" +
+      "                         (add3 i 1) (+ i))" +
+      "                     1)))))" +
+      "(loop 3000 0)";
+    check("4506000", program);
+  }
+}
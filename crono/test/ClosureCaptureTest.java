@@ -0,0 +1,43 @@
+/**
+ * Closures keep only the locals they refer to, which must still be every
+ * local they can see.
+ */
+public class ClosureCaptureTest extends CronoTestCase {
+  public void testArgument() throws Exception {
+    check("7", "(defun adder (n) (\\ (x) (+ x n))) ((adder 3) 4)");
+  }
+
+  public void testUnusedArgument() throws Exception {
+    check("11", "(defun f (a b) (\\ (x) (+ x a))) ((f 1 2) 10)");
+  }
+
+  public void testLetBinding() throws Exception {
+    String program =
+      "(defun f (a) (let ((b (* a 2))) (\\ (x) (+ x b)))) ((f 5) 1)";
+    check(LEXICAL, "11", program);
+  }
+
+  public void testNested() throws Exception {
+    String program =
+      "(defun f (a) (\\ (x) (\\ (y) (+ a (+ x y))))) (((f 1) 2) 3)";
+    check("6", program);
+  }
+
+  public void testLocalDefinition() throws Exception {
+    String program =
+      "(defun f (n) (define k n) (\\ (x) (+ k x))) ((f 4) 1)";
+    check(LEXICAL, "5", program);
+  }
+
+  public void testInTry() throws Exception {
+    String program = "(defun f (a) (\\ (x) (try e (raise a) e))) ((f 7) 0)";
+    check(LEXICAL, "7", program);
+  }
+
+  public void testShadowsGlobal() throws Exception {
+    String program =
+      "(define a 100) (defun f (a) (\\ (x) (+ a x))) ((f 1) 2)";
+    check(LEXICAL, "3", program);
+    check(DYNAMIC, "3", program);
+  }
+}
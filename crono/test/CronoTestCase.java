@@ -0,0 +1,121 @@
+import java.io.StringReader;
+
+import crono.Crono;
+import crono.Interpreter;
+import crono.InterpreterException;
+import crono.Optimizer;
+import crono.Parser;
+import crono.Visitor;
+import crono.compiler.CompilingInterpreter;
+import crono.type.CronoType;
+import crono.type.Nil;
+import crono.vm.VirtualMachine;
+
+/**
+ * Runs Crono programs for the tests.
+ * Every program is run in a fresh interpreter, set up the way Crono sets it
+ * up for the given command line options. The check methods run a program
+ * under every engine and option that must not change its result, and
+ * compare the results by their printed form.
+ */
+public abstract class CronoTestCase extends junit.framework.TestCase {
+  /* The options check runs every program under */
+  protected static final String[] ENGINES = {"", "-c", "-b", "-O", "-d"};
+  /* Every engine with lexical scope */
+  protected static final String[] LEXICAL = {"", "-c", "-b", "-O"};
+  /* Every engine with dynamic scope */
+  protected static final String[] DYNAMIC = {"-d", "-cd", "-bd", "-Od"};
+
+  /**
+   * Makes an interpreter for the given options.
+   * @param options Any of b, c, d and O, as given to Crono.
+   */
+  protected Visitor visitor(String options) {
+    Interpreter interp = new Interpreter();
+    if(options.indexOf('d') >= 0) {
+      interp.dynamic(true);
+    }
+    if(options.indexOf('b') >= 0) {
+      return new VirtualMachine(interp);
+    }
+    if(options.indexOf('c') >= 0) {
+      return new CompilingInterpreter(interp);
+    }
+    return interp;
+  }
+
+  /**
+   * Runs a program in a visitor, as Crono runs a file.
+   * @return The value of the last form.
+   */
+  protected CronoType run(Visitor v, String program, boolean optimize)
+    throws Exception
+  {
+    Parser parser = new Parser(new StringReader(program));
+    boolean saved = Crono.optimize;
+    Crono.optimize = optimize;
+    try {
+      CronoType[] forms = Optimizer.optimize(v, parser.program());
+      CronoType result = Nil.NIL;
+      for(CronoType form : forms) {
+        result = form.accept(v);
+      }
+      return result;
+    }finally {
+      Crono.optimize = saved;
+    }
+  }
+
+  protected CronoType run(String options, String program) throws Exception {
+    return run(visitor(options), program, options.indexOf('O') >= 0);
+  }
+
+  /**
+   * @return The printed form of the value of the last form of program.
+   */
+  protected String eval(String options, String program) throws Exception {
+    return run(options, program).repr();
+  }
+
+  /**
+   * Checks that a program gives the same result under every engine.
+   * @param expected The printed form of the result.
+   */
+  protected void check(String expected, String program) throws Exception {
+    check(ENGINES, expected, program);
+  }
+
+  /**
+   * Checks that a program gives the same result under each of engines.
+   */
+  protected void check(String[] engines, String expected, String program)
+    throws Exception
+  {
+    for(String options : engines) {
+      assertEquals("with options '" + options + "'", expected,
+                   eval(options, program));
+    }
+  }
+
+  /**
+   * Checks that a program fails with an InterpreterException under every
+   * engine.
+   * @return The message, which is the same for every engine.
+   */
+  protected String checkError(String program) throws Exception {
+    String message = null;
+    for(String options : ENGINES) {
+      try {
+        eval(options, program);
+        fail("with options '" + options + "': no error");
+      }catch(InterpreterException ie) {
+        if(message == null) {
+          message = ie.getMessage();
+        }
+        assertEquals("with options '" + options + "'", message,
+                     ie.getMessage());
+      }
+    }
+    return message;
+  }
+}
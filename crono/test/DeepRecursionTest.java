@@ -0,0 +1,47 @@
+/**
+ * The VM keeps suspended callers on the heap, so recursion that is not in
+ * tail position is limited by memory rather than by the Java stack.
+ */
+public class DeepRecursionTest extends CronoTestCase {
+  /* The engines that keep their continuations on the heap */
+  private static final String[] HEAP = {"-b", "-Ob"};
+  private static final int DEPTH = 100000;
+
+  public void testCount() throws Exception {
+    String program =
+      "(defun count (i) (if (= i 0) 0 (+ 1 (count (- i 1)))))" +
+      "(count " + DEPTH + ")";
+    check(HEAP, Integer.toString(DEPTH), program);
+  }
+
+  public void testList() throws Exception {
+    String program =
+      "(defun build (i) (if (= i 0) Nil (cons i (build (- i 1)))))" +
+      "(defun len (l) (if (= l Nil) 0 (+ 1 (len (cdr l)))))" +
+      "(len (build " + DEPTH + "))";
+    check(HEAP, Integer.toString(DEPTH), program);
+  }
+
+  public void testThroughLet() throws Exception {
+    String program = "(defun count (i)" +
+      "  (if (= i 0) 0 (+ 1 (let ((j (- i 1))) (count j)))))" +
+      "(count " + DEPTH + ")";
+    check(HEAP, Integer.toString(DEPTH), program);
+  }
+
+  public void testRaise() throws Exception {
+    String program =
+      "(defun count (i) (if (= i 0) (raise 7) (+ 1 (count (- i 1)))))" +
+      "(define x 1)" +
+      "(cons (try e (count " + DEPTH + ") e) x)";
+    check(HEAP, "(7 . 1)", program);
+  }
+
+  public void testShallow() throws Exception {
+    /* Every engine gives the same result where the Java stack suffices */
+    String program =
+      "(defun count (i) (if (= i 0) 0 (+ 1 (count (- i 1)))))" +
+      "(count 200)";
+    check("200", program);
+  }
+}
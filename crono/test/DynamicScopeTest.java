@@ -0,0 +1,67 @@
+/**
+ * Under dynamic scope a call sees the bindings of its callers, and every
+ * binding is undone when the call that made it returns or fails.
+ */
+public class DynamicScopeTest extends CronoTestCase {
+  private static final String SHOW = "(define x 1) (defun show (u) x)";
+
+  public void testCallerBinding() throws Exception {
+    String program = SHOW + "(defun f (x) (show 0)) (cons (f 2) (show 0))";
+    check(DYNAMIC, "(2 . 1)", program);
+    check(LEXICAL, "(1 . 1)", program);
+  }
+
+  public void testUnboundAfterReturn() throws Exception {
+    String program = "(defun show (u) y) (defun f (y) (show 0))";
+    check(DYNAMIC, "3", program + "(f 3)");
+    check(DYNAMIC, "0", program + "(f 3) (try e (show 0) 0)");
+  }
+
+  public void testRestoredAfterRaise() throws Exception {
+    check(DYNAMIC, "1", SHOW + "(defun f (x) (raise x)) (try e (f 5) e)" +
+          "(show 0)");
+    String program = SHOW + "(defun f (x) (+ (show 0) (raise x)))" +
+      "(cons (try e (f 5) e) (show 0))";
+    check(DYNAMIC, "(5 . 1)", program);
+  }
+
+  public void testRecursion() throws Exception {
+    String program = "(define x 1)" +
+      "(defun g (x) (if (= x 0) Nil (cons x (g (- x 1)))))" +
+      "(cons (g 3) x)";
+    check(DYNAMIC, "((3 2 1) . 1)", program);
+  }
+
+  public void testTailRecursion() throws Exception {
+    String program = "(define x 1)" +
+      "(defun loop (x) (if (= x 0) 0 (loop (- x 1))))" +
+      "(loop 100000) x";
+    check(DYNAMIC, "1", program);
+  }
+
+  public void testLocalDefinition() throws Exception {
+    check(DYNAMIC, "1", "(define x 1) (let ((x 2)) (define x 3)) x");
+    check(DYNAMIC, "(9 . 1)",
+          "(define x 1) (defun f (x) (define x 9) x) (cons (f 2) x)");
+  }
+
+  public void testClosureKeepsArguments() throws Exception {
+    /* A closure keeps the arguments of the call that made it, which are
+     * restored when that call returns */
+    check(DYNAMIC, "3", "(define mk (\\ (a) (\\ (b) (+ a b)))) ((mk 1) 2)");
+    check(DYNAMIC, "2", "(define compose (\\ (f g) (\\ (x) (f (g x)))))" +
+          "((compose car cdr) '(1 2 3))");
+  }
+
+  public void testClosureSeesCallerBindings() throws Exception {
+    /* Everything else, including let bindings, is still looked up where
+     * the closure is called */
+    String program = "(defun show (u) y) (defun f (a) (\\ (u) (show a)))" +
+      "(defun g (y) ((f 0) 0))";
+    check(DYNAMIC, "4", program + "(g 4)");
+    String let = "(defun f (a) (let ((b a)) (\\ (x) (+ x b))))" +
+      "(define b 100) ((f 5) 1)";
+    check(DYNAMIC, "101", let);
+    check(LEXICAL, "6", let);
+  }
+}
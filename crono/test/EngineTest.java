@@ -0,0 +1,84 @@
+/**
+ * Runs the same programs under every engine, and checks they agree.
+ */
+public class EngineTest extends CronoTestCase {
+  public void testTailCall() throws Exception {
+    String program =
+      "(defun loop (i acc) (if (= i 0) acc (loop (- i 1) (+ acc 1))))" +
+      "(loop 200000 0)";
+    check("200000", program);
+  }
+
+  public void testMutualTailCall() throws Exception {
+    String program =
+      "(defun even (n) (if (= n 0) #t (odd (- n 1))))" +
+      "(defun odd (n) (if (= n 0) Nil (even (- n 1))))" +
+      "(even 100001)";
+    check("Nil", program);
+  }
+
+  public void testTryRaise() throws Exception {
+    check("3", "(try e (+ 1 (raise 3)) e)");
+    check("3", "(try e 3 e)");
+    check("0", "(try e (car 5) 0)");
+  }
+
+  public void testTryRollsBackGlobal() throws Exception {
+    check("5", "(define z 5) (try e (+ (define z 7) (raise 3)) e) z");
+  }
+
+  public void testNestedTryRollsBack() throws Exception {
+    String program = "(define a 1)" +
+      "(try e (+ (define a 2) (try f (+ (define a 3) (raise 4)) (+ a f))) e)";
+    check("8", program);
+    check("2", program + " a");
+  }
+
+  public void testTryKeepsLocal() throws Exception {
+    check("10", "(define f (\\ (x) (+ (try e (define x 5) e) x))) (f 1)");
+  }
+
+  public void testUncaught() throws Exception {
+    checkError("(raise 5)");
+  }
+
+  public void testQuote() throws Exception {
+    check("(x)", "(cons 'x Nil)");
+    check("x", "(let ((y 'x)) y)");
+    /* Special forms lose the quote on an argument */
+    check("(\\ (a) x)", "(\\ (a) 'x)");
+    check("1", "(let ((x 1)) 'x)");
+    checkError("(if #t 'x Nil)");
+  }
+
+  public void testLetrec() throws Exception {
+    String program =
+      "(letrec ((fact (\\ (n) (if (= n 0) 1 (* n (fact (- n 1)))))))" +
+      " (fact 10))";
+    check("3628800", program);
+  }
+
+  public void testLetrecMutual() throws Exception {
+    String program =
+      "(letrec ((ev (\\ (n) (if (= n 0) #t (od (- n 1)))))" +
+      "         (od (\\ (n) (if (= n 0) Nil (ev (- n 1))))))" +
+      " (ev 10))";
+    check("#t", program);
+  }
+
+  public void testCurrying() throws Exception {
+    String add3 = "(define add3 (\\ (x y z) (+ x (+ y z))))";
+    check("3", "(define add (\\ (x y) (+ x y))) ((add 1) 2)");
+    check("6", add3 + "(((add3 1) 2) 3)");
+    check("6", add3 + "((add3 1 2) 3)");
+    check("42", "(define inc (+ 1)) (inc 41)");
+  }
+
+  public void testCurriedArgument() throws Exception {
+    String program =
+      "(defun map (f l)" +
+      "  (if (= l Nil) Nil (cons (f (car l)) (map f (cdr l)))))" +
+      "(map (* 3) (cons 1 (cons 2 Nil)))";
+    check("(3 6)", program);
+  }
+}
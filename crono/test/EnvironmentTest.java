@@ -0,0 +1,58 @@
+import java.util.Iterator;
+import java.util.Map;
+
+import crono.CronoFunction;
+import crono.Environment;
+import crono.type.CronoInteger;
+import crono.type.CronoType;
+import crono.type.Symbol;
+
+/**
+ * Every environment starts from the same builtins, and none of them may
+ * change what another sees.
+ */
+public class EnvironmentTest extends CronoTestCase {
+  private static final Symbol CAR = Symbol.intern("car");
+
+  public void testSharedBuiltins() throws Exception {
+    Environment a = new Environment();
+    Environment b = new Environment();
+    assertSame(CronoFunction.CAR.function, a.get(CAR));
+    assertSame(a.get(CAR), b.get(CAR));
+    assertNull(new Environment(false).get(CAR));
+  }
+
+  public void testShadowBuiltin() throws Exception {
+    Environment a = new Environment();
+    Environment b = new Environment();
+    a.put(CAR, new CronoInteger(5));
+    assertEquals(new CronoInteger(5), a.get(CAR));
+    assertSame(CronoFunction.CAR.function, b.get(CAR));
+    assertSame(CronoFunction.CAR.function, new Environment().get(CAR));
+  }
+
+  public void testLocalShadow() throws Exception {
+    Environment global = new Environment();
+    Environment local = global.local();
+    local.put(CAR, new CronoInteger(5));
+    assertEquals(new CronoInteger(5), local.get(CAR));
+    assertSame(CronoFunction.CAR.function, global.get(CAR));
+  }
+
+  public void testUndefineBuiltin() throws Exception {
+    checkError("(define car 5) (undef car) (car (cons 1 2))");
+    check("1", "(car (cons 1 2))");
+  }
+
+  public void testListsDefinitionsInOrder() throws Exception {
+    Symbol first = Symbol.intern("environment-test-first");
+    Symbol second = Symbol.intern("environment-test-second");
+    Environment env = new Environment(false);
+    env.put(second, new CronoInteger(2));
+    env.put(first, new CronoInteger(1));
+    Iterator<Map.Entry<Symbol, CronoType>> iter = env.iterator();
+    assertSame(first, iter.next().getKey());
+    assertSame(second, iter.next().getKey());
+    assertFalse(iter.hasNext());
+  }
+}
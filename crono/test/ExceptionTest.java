@@ -0,0 +1,53 @@
+import crono.CronoException;
+import crono.InterpreterException;
+import crono.type.CronoInteger;
+import crono.type.CronoType;
+
+public class ExceptionTest extends CronoTestCase {
+  public void testNoStackTrace() throws Exception {
+    assertEquals(0, new InterpreterException("test").getStackTrace().length);
+    assertEquals(0, new CronoException(new CronoInteger(1))
+                 .getStackTrace().length);
+  }
+
+  public void testStackTraces() throws Exception {
+    InterpreterException.stackTraces(true);
+    try {
+      assertTrue(new InterpreterException("test").getStackTrace().length > 0);
+    }finally {
+      InterpreterException.stackTraces(false);
+    }
+    assertEquals(0, new InterpreterException("test").getStackTrace().length);
+  }
+
+  public void testMessage() throws Exception {
+    InterpreterException ie =
+      new InterpreterException("%s and %d", "a", 2);
+    assertEquals("a and 2", ie.getMessage());
+    assertEquals("CronoException: 5",
+                 new CronoException(new CronoInteger(5)).getMessage());
+  }
+
+  public void testArgumentsAsThrown() throws Exception {
+    StringBuilder arg = new StringBuilder("before");
+    InterpreterException ie = new InterpreterException("%s", arg);
+    arg.append(" and after");
+    assertEquals("before", ie.getMessage());
+  }
+
+  public void testArgumentArray() throws Exception {
+    /* A CronoType[] passed as the arguments is copied, not written to */
+    CronoType[] args = {new CronoInteger(1), new CronoInteger(2)};
+    InterpreterException ie =
+      new InterpreterException("%s %s", (Object[])args);
+    assertEquals("1 2", ie.getMessage());
+    assertTrue(args[0] instanceof CronoInteger);
+  }
+
+  public void testRaisedValue() throws Exception {
+    check("(1 2)", "(try e (raise (cons 1 (cons 2 Nil))) e)");
+    check("3", "(try e (+ 1 (try f (raise 2) (raise (+ f 1)))) e)");
+    assertEquals("CronoException: (1 2)",
+                 checkError("(raise (cons 1 (cons 2 Nil)))"));
+  }
+}
@@ -1,200 +1,91 @@
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
-import crono.AbstractSyntax.*;
-import crono.Cons;
-import crono.CronoOptions;
-import crono.CronoNumber;
-import crono.Environment;
-import crono.Interpreter;
-import crono.LambdaFunction;
-import crono.Parser;
-import crono.Symbol;
-
-import static crono.Nil.NIL;
-
-public class FunctionsTest extends junit.framework.TestCase {
-  private static Parser parser = new Parser(new StringReader(""));
-
-  private CronoType setup(String input, boolean debug) throws Exception {
-    CronoOptions.DPRINT_ENABLE = debug;
-    StringReader in = new StringReader(input);
-    parser.ReInit(in);
-    return parser.prog(Interpreter.getDefaultEnvironment());
-  }
-
-  private CronoType setup(String input) throws Exception {
-    return setup(input, false);
+public class FunctionsTest extends CronoTestCase {
+  public void testLambda() throws Exception {
+    check("(\\ (x) (cons x Nil))", "(\\ (x) (cons x Nil))");
   }
 
-  public void testLambdaParse() throws Exception {
-    CronoType actual = setup("(\\ (x) (cons x nil))");
-
-    assertTrue(actual instanceof LambdaFunction);
-  }
-
-  public void testDefineParse() throws Exception {
-    String input = "(define foo (x) (cons x nil))";
-
-    CronoOptions.DPRINT_ENABLE = false;
-    StringReader in = new StringReader(input);
-    parser.ReInit(in);
-    Environment env = Interpreter.getDefaultEnvironment();
-    CronoType actual = parser.prog(env);
-
-    assertTrue(actual instanceof LambdaFunction);
-    assertTrue(env.containsKey(Symbol.valueOf("foo")));
+  public void testDefun() throws Exception {
+    check("(\\ (x) (cons x Nil))", "(defun foo (x) (cons x Nil))");
   }
 
-  public void testDefineRunnability() throws Exception {
-    String input = "(define foo (x) (cons x nil)) (foo 1)";
-    CronoType actual = setup(input);
-
-    CronoType expected = new Cons(CronoNumber.valueOf(1), NIL);
-
-    assertEquals(expected, actual);
+  public void testDefunCall() throws Exception {
+    check("(1)", "(defun foo (x) (cons x Nil)) (foo 1)");
   }
 
-  public void testMultipleDefine() throws Exception {
-    String input = "(define foo (x) (cons x nil)) (define bar (x) (car x))" +
+  public void testDefunCalls() throws Exception {
+    String program = "(defun foo (x) (cons x Nil)) (defun bar (x) (car x))" +
       "(bar (foo 1))";
-    CronoType actual = setup(input);
-
-    CronoType expected = CronoNumber.valueOf(1);
-
-    assertEquals(expected, actual);
+    check("1", program);
   }
 
-  public void testSingleAdd() throws Exception {
-    CronoType actual = setup("(+ 1 2)");
-
-    CronoType expected = CronoNumber.valueOf(3);
-
-    assertEquals(expected, actual);
+  public void testAdd() throws Exception {
+    check("3", "(+ 1 2)");
   }
 
-  public void testNestedAdd() throws Exception {
-    CronoType actual = setup("(+ (+ 1 2) 3)");
-
-    CronoType expected = CronoNumber.valueOf(6);
-
-    assertEquals(expected, actual);
+  public void testAddNested() throws Exception {
+    check("6", "(+ (+ 1 2) 3)");
   }
 
-  public void testListAdd() throws Exception {
-    CronoType actual = setup("(+ 1 2 3 4)");
-
-    CronoType expected = CronoNumber.valueOf(10);
-
-    assertEquals(expected, actual);
+  public void testAddTooMany() throws Exception {
+    checkError("(+ 1 2 3 4)");
   }
 
-  public void testSingleSub() throws Exception {
-    CronoType actual = setup("(- 2 1)");
-
-    CronoType expected = CronoNumber.valueOf(1);
-
-    assertEquals(expected, actual);
+  public void testSub() throws Exception {
+    check("1", "(- 2 1)");
   }
 
-  public void testNestedSub() throws Exception {
-    CronoType actual = setup("(- (- 5 1) 3)");
-
-    CronoType expected = CronoNumber.valueOf(1);
-
-    assertEquals(expected, actual);
+  public void testSubNested() throws Exception {
+    check("1", "(- (- 5 1) 3)");
   }
 
-  public void testUnarySub() throws Exception {
-    CronoType actual = setup("(- 3)");
-
-    CronoType expected = CronoNumber.valueOf(-3);
-
-    assertEquals(expected, actual);
+  public void testSubCurried() throws Exception {
+    check("2", "((- 3) 1)");
   }
 
-  public void testListSub() throws Exception {
-    CronoType actual = setup("(- 10 4 3 2 1)");
-
-    CronoType expected = CronoNumber.valueOf(0);
-
-    assertEquals(expected, actual);
+  public void testSubTooMany() throws Exception {
+    checkError("(- 10 4 3 2 1)");
   }
 
-  public void testSingleMult() throws Exception {
-    CronoType actual = setup("(* 2 3)");
-
-    CronoType expected = CronoNumber.valueOf(6);
-
-    assertEquals(expected, actual);
+  public void testMul() throws Exception {
+    check("6", "(* 2 3)");
   }
 
-  public void testNestedMult() throws Exception {
-    CronoType actual = setup("(* (* 2 3) 4)");
-
-    CronoType expected = CronoNumber.valueOf(24);
-
-    assertEquals(expected, actual);
+  public void testMulNested() throws Exception {
+    check("24", "(* (* 2 3) 4)");
   }
 
-  public void testListMult() throws Exception {
-    CronoType actual = setup("(* 2 3 4)");
-
-    CronoType expected = CronoNumber.valueOf(24);
-
-    assertEquals(expected, actual);
+  public void testMulTooMany() throws Exception {
+    checkError("(* 2 3 4)");
   }
-  public void testSingleDiv() throws Exception {
-    CronoType actual = setup("(/ 6 3)");
-
-    CronoType expected = CronoNumber.valueOf(2);
 
-    assertEquals(expected, actual);
+  public void testDiv() throws Exception {
+    check("2", "(/ 6 3)");
   }
 
-  public void testNestedDiv() throws Exception {
-    CronoType actual = setup("(/ (/ 12 3) 4)");
-
-    CronoType expected = CronoNumber.valueOf(1);
-
-    assertEquals(expected, actual);
+  public void testDivNested() throws Exception {
+    check("1", "(/ (/ 12 3) 4)");
   }
 
-  public void testEq1() throws Exception {
-    CronoType actual = setup("(= 1 1)");
-
-    assertTrue(actual != NIL);
+  public void testEqual() throws Exception {
+    check("#t", "(= 1 1)");
   }
 
-  public void testEq2() throws Exception {
-    CronoType actual = setup("(= cons cons)");
-
-    assertTrue(actual != NIL);
+  public void testEqualFunction() throws Exception {
+    check("#t", "(= cons cons)");
   }
 
-  public void testEqCons() throws Exception {
-    CronoType actual = setup("(= (cons 1 nil) (cons 1 nil))");
-
-    assertTrue(actual != NIL);
+  public void testEqualList() throws Exception {
+    check("#t", "(= (cons 1 Nil) (cons 1 Nil))");
   }
 
-  public void testNEq1() throws Exception {
-    CronoType actual = setup("(= 1 2)");
-
-    assertTrue(actual == NIL);
+  public void testNotEqual() throws Exception {
+    check("Nil", "(= 1 2)");
   }
 
-  public void testNeq2() throws Exception {
-    CronoType actual = setup("(= car cdr)");
-
-    assertTrue(actual == NIL);
+  public void testNotEqualFunction() throws Exception {
+    check("Nil", "(= car cdr)");
   }
 
-  public void testNeq3() throws Exception {
-    CronoType actual = setup("(= (cons 1 2) (cons 2 1))");
-
-    assertTrue(actual == NIL);
+  public void testNotEqualPair() throws Exception {
+    check("Nil", "(= (cons 1 2) (cons 2 1))");
   }
 }
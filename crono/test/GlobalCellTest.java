@@ -0,0 +1,72 @@
+import crono.InterpreterException;
+import crono.Visitor;
+
+/**
+ * Top-level definitions live in cells shared by every closure, and a
+ * failed form must leave them as they were.
+ */
+public class GlobalCellTest extends CronoTestCase {
+  public void testLateDefinition() throws Exception {
+    String program = "(define x 1) (defun f (y) (+ x y))" +
+      "(define x 10) (f 1)";
+    check("11", program);
+  }
+
+  public void testLocalDefinition() throws Exception {
+    checkError("(defun f (n) (define total n)) (f 3) total");
+  }
+
+  public void testRedefinedSpecialForm() throws Exception {
+    /* Compiled special forms must notice their head was redefined */
+    check("2", "(defun f (x) (if x 1 2)) (define if (\\ (a b c) c)) (f #t)");
+    check("1", "(defun f (x) (while x 1)) (define while (\\ (a b) b))" +
+          "(f #t)");
+    /* Also once the body has been run often enough to be promoted */
+    String program = "(defun f (x) (if x 1 2))" +
+      "(defun loop (n) (if (= n 0) 0 (loop (- n (f #t))))) (loop 2000)" +
+      "(define if (\\ (a b c) c)) (f #t)";
+    check("2", program);
+    checkError("(defun f (x) (if x 1 2)) (define if 5) (f #t)");
+  }
+
+  public void testGlobalNotShadowed() throws Exception {
+    String program = "(define x 1) (define g (\\ (u) x))" +
+      "(let ((x 5)) (g 0))";
+    check(LEXICAL, "1", program);
+    check(DYNAMIC, "5", program);
+  }
+
+  public void testTryRollsBack() throws Exception {
+    check("5", "(define z 5) (try e (+ (define z 7) (raise 3)) e) z");
+    check("7", "(define z 5) (try e (define z 7) e) z");
+  }
+
+  public void testNestedTryRollsBack() throws Exception {
+    String program = "(define a 1)" +
+      "(try e (+ (define a 5) (try f (+ (define a 6) (raise 4)) (raise a)))" +
+      " e)";
+    check("5", program);
+    check("1", program + " a");
+  }
+
+  public void testUndefineRollsBack() throws Exception {
+    check("1", "(define x 1) (try e (+ (undef x) (raise 0)) e) x");
+  }
+
+  /* As the REPL does, a failed form is undone */
+  public void testUncaughtRollsBack() throws Exception {
+    for(String options : ENGINES) {
+      Visitor v = visitor(options);
+      run(v, "(define z 5)", false);
+      Visitor.VisitorState state = v.getState();
+      try {
+        run(v, "(+ (define z 7) (raise 3))", false);
+        fail("with options '" + options + "': no error");
+      }catch(InterpreterException ie) {
+        v.setState(state);
+      }
+      assertEquals("with options '" + options + "'", "5",
+                   run(v, "z", false).repr());
+    }
+  }
+}
@@ -0,0 +1,62 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import crono.Interpreter;
+
+/**
+ * Tracing, AST printing and environment reporting print the same as ever
+ * when on, and nothing when off.
+ */
+public class InstrumentTest extends CronoTestCase {
+  private static final String PROGRAM = "(define x 2) (+ x 1)";
+
+  /* Runs PROGRAM, and returns what it printed */
+  private String output(Interpreter interp) throws Exception {
+    PrintStream out = System.out;
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(buffer, true));
+    try {
+      assertEquals("3", run(interp, PROGRAM, false).repr());
+    }finally {
+      System.setOut(out);
+    }
+    return buffer.toString();
+  }
+
+  public void testOff() throws Exception {
+    assertEquals("", output(new Interpreter()));
+  }
+
+  public void testTrace() throws Exception {
+    Interpreter interp = new Interpreter();
+    interp.trace(true);
+    String output = output(interp);
+    assertTrue(output, output.contains("Visiting (+ x 1)"));
+    assertTrue(output, output.contains("Result: 3 [:int]"));
+  }
+
+  public void testPrintAST() throws Exception {
+    Interpreter interp = new Interpreter();
+    interp.printAST(true);
+    String output = output(interp);
+    assertTrue(output, output.contains("AST: Function Application Node"));
+    assertFalse(output, output.contains("Visiting"));
+  }
+
+  public void testShowEnv() throws Exception {
+    Interpreter interp = new Interpreter();
+    interp.showEnv(true);
+    String output = output(interp);
+    assertTrue(output, output.contains("Env: "));
+    assertTrue(output, output.contains("(x 2)"));
+  }
+
+  public void testTurnedOff() throws Exception {
+    Interpreter interp = new Interpreter();
+    interp.trace(true);
+    interp.printAST(true);
+    interp.trace(false);
+    interp.printAST(false);
+    assertEquals("", output(interp));
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Let and letrec run in frames of their own, and must bind exactly as the
+ * lambda applications they used to be turned into.
+ */
+public class LetFrameTest extends CronoTestCase {
+  public void testBindings() throws Exception {
+    check("3", "(let ((x 1) (y 2)) (+ x y))");
+    check("5", "(let () 5)");
+    check("Nil", "(let ((x)) x)");
+  }
+
+  public void testValuesSeeOuterScope() throws Exception {
+    check("1", "(let ((x 1)) (let ((x 2) (y x)) y))");
+  }
+
+  public void testLetrecValuesSeeEachOther() throws Exception {
+    check("2", "(letrec ((x 1) (y (+ x 1))) y)");
+  }
+
+  public void testLetrecTailCall() throws Exception {
+    String program =
+      "(letrec ((f (\\ (n) (if (= n 0) 0 (f (- n 1)))))) (f 100000))";
+    check("0", program);
+  }
+
+  public void testDefinitionsStayInside() throws Exception {
+    check("2", "(let ((x 1)) (define x 2) x)");
+    check("1", "(define x 1) (let ((x 2)) x) x");
+  }
+
+  public void testClosuresKeepTheirFrame() throws Exception {
+    check("4", "(let ((f (\\ (n) n))) (let ((g (\\ (n) (f n)))) (g 4)))");
+    String program = "(defun mk (n) (let ((k n)) (\\ (x) (+ x k))))" +
+      "(cons ((mk 1) 0) ((mk 2) 0))";
+    check(LEXICAL, "(1 . 2)", program);
+  }
+
+  public void testRaiseLeavesFrame() throws Exception {
+    check("3", "(let ((x 1)) (try e (let ((x 2)) (raise x)) (+ e x)))");
+  }
+
+  public void testMalformed() throws Exception {
+    checkError("(let (x 1) x)");
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Locals resolved to frame slots must see the same values as the
+ * environment, including after a form the compiler leaves to the
+ * interpreter changes them.
+ */
+public class LexicalAddressTest extends CronoTestCase {
+  public void testNestedLet() throws Exception {
+    String program = "(define f (\\ (x y)" +
+      "  (let ((z (+ x y))) (let ((x z)) (* x y)))))" +
+      "(f 2 3)";
+    check("15", program);
+  }
+
+  public void testDefineInTry() throws Exception {
+    check("10", "(define f (\\ (x) (+ (try e (define x 5) e) x))) (f 1)");
+  }
+
+  public void testDefineInFailedTry() throws Exception {
+    String program = "(define g (\\ (x y)" +
+      "  (+ (+ (try e (+ (define y 7) (raise 1)) e)" +
+      "        (try e (define x 10) e))" +
+      "     (+ x y))))" +
+      "(g 1 2)";
+    check("23", program);
+  }
+
+  public void testDefineInLet() throws Exception {
+    String h = "(define h (\\ (x) (let ((x 3)) (try e (define x 4) e) x)))";
+    check("4", h + "(h 1)");
+    String k = "(define k (\\ (x)" +
+      "  (+ (let ((y 2)) (try e (define x 9) e) y) x)))";
+    check("3", k + "(k 1)");
+  }
+
+  public void testHotBody() throws Exception {
+    String program =
+      "(define f (\\ (x) (+ (try e (define x 5) e) x)))" +
+      "(define loop (\\ (i acc)" +
+      "  (if (= i 0) acc (loop (- i 1) (+ acc (f i))))))" +
+      "(loop 3000 0)";
+    check("30000", program);
+  }
+}
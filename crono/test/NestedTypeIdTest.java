@@ -0,0 +1,58 @@
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import crono.type.CronoFloat;
+import crono.type.CronoInteger;
+import crono.type.CronoType;
+import crono.type.CronoVector;
+import crono.type.NestedTypeId;
+import crono.type.TypeId;
+
+public class NestedTypeIdTest extends junit.framework.TestCase {
+  private static NestedTypeId vector(TypeId inner) {
+    return NestedTypeId.intern(":vector", CronoVector.class,
+                               new TypeId[]{inner}, CronoVector.TYPEID);
+  }
+
+  public void testIntern() throws Exception {
+    assertSame(vector(CronoInteger.TYPEID), vector(CronoInteger.TYPEID));
+    assertNotSame(vector(CronoInteger.TYPEID), vector(CronoFloat.TYPEID));
+    assertFalse(vector(CronoInteger.TYPEID).equals(
+                  vector(CronoFloat.TYPEID)));
+    assertSame(vector(vector(CronoInteger.TYPEID)),
+               vector(vector(CronoInteger.TYPEID)));
+  }
+
+  public void testVectorTypes() throws Exception {
+    CronoVector ints = new CronoVector(new CronoType[0], CronoInteger.TYPEID);
+    CronoVector more = new CronoVector(new CronoType[0], CronoInteger.TYPEID);
+    assertSame(ints.typeId(), more.typeId());
+    assertSame(vector(CronoInteger.TYPEID), ints.typeId());
+  }
+
+  public void testEqualInnerTypes() throws Exception {
+    /* Distinct but equal inner types give equal nested types */
+    TypeId a = new TypeId(":nested-test", Object.class);
+    TypeId b = new TypeId(":nested-test", Object.class);
+    assertEquals(vector(a), vector(b));
+  }
+
+  public void testTableIsWeak() throws Exception {
+    /* The table must not keep a type alive on its own: its keys are held
+     * weakly, and its values only through weak references */
+    NestedTypeId type =
+      vector(new TypeId(":nested-test-weak", Object.class));
+    Field field = NestedTypeId.class.getDeclaredField("interned");
+    field.setAccessible(true);
+    Map<?, ?> interned = (Map<?, ?>)field.get(null);
+    assertTrue(interned instanceof WeakHashMap);
+    boolean found = false;
+    for(Object value : interned.values()) {
+      assertTrue(value instanceof WeakReference);
+      found |= (((WeakReference<?>)value).get() == type);
+    }
+    assertTrue(found);
+  }
+}
@@ -0,0 +1,78 @@
+import java.io.StringReader;
+
+import crono.Crono;
+import crono.Interpreter;
+import crono.Optimizer;
+import crono.Parser;
+import crono.Visitor;
+import crono.type.CronoType;
+
+public class OptimizerTest extends CronoTestCase {
+  /* The forms of a program after optimization, separated by spaces */
+  private String optimize(String program) throws Exception {
+    CronoType[] forms = new Parser(new StringReader(program)).program();
+    boolean saved = Crono.optimize;
+    Crono.optimize = true;
+    try {
+      forms = Optimizer.optimize(new Interpreter(), forms);
+    }finally {
+      Crono.optimize = saved;
+    }
+    StringBuilder result = new StringBuilder();
+    for(CronoType form : forms) {
+      if(result.length() > 0) {
+        result.append(" ");
+      }
+      result.append(form.repr());
+    }
+    return result.toString();
+  }
+
+  public void testFold() throws Exception {
+    assertEquals("7", optimize("(+ 1 (* 2 3))"));
+    assertEquals("(\\ (x) (+ x 6))", optimize("(\\ (x) (+ x (* 2 3)))"));
+  }
+
+  public void testCurry() throws Exception {
+    assertEquals("(\\ (_i?0!_) (+ 1 _i?0!_))", optimize("(+ 1)"));
+    check("3", "((+ 1) 2)");
+  }
+
+  public void testImpure() throws Exception {
+    assertEquals("(cons 1 2)", optimize("(cons 1 2)"));
+  }
+
+  public void testRebound() throws Exception {
+    String program = "(define + -) (+ 1 2)";
+    assertEquals(program, optimize(program));
+    check("-1", program);
+    program = "(let ((* +)) (* 2 3))";
+    assertEquals(program, optimize(program));
+    check("5", program);
+    program = "(defun f (* x) (* 2 3)) (f + 0)";
+    assertEquals(program, optimize(program));
+    check("5", program);
+  }
+
+  public void testErrorsAreNotFolded() throws Exception {
+    assertEquals("(/ 1 0)", optimize("(/ 1 0)"));
+    assertEquals("(if Nil (/ 1 0) 2)", optimize("(if Nil (/ 1 0) 2)"));
+    check("2", "(if Nil (/ 1 0) 2)");
+  }
+
+  public void testRuntimeDefinitions() throws Exception {
+    String program = "(eval \"(define + -)\") (+ 5 1)";
+    assertEquals("(eval (define + -)) (+ 5 1)", optimize(program));
+    check("4", program);
+  }
+
+  public void testRuntimeDefinitionsThroughAlias() throws Exception {
+    /* eval is bound to another name by a program loaded earlier */
+    for(String options : new String[]{"-O", "-Oc", "-Ob"}) {
+      Visitor v = visitor(options);
+      run(v, "(define ev eval)", true);
+      String program = "(ev \"(define + -)\") (+ 5 1)";
+      assertEquals(options, "4", run(v, program, true).repr());
+    }
+  }
+}
@@ -0,0 +1,34 @@
+import crono.CronoFunction;
+import crono.type.CronoType;
+import crono.type.PartialApplication;
+
+public class PartialApplicationTest extends CronoTestCase {
+  public void testCurriedBuiltin() throws Exception {
+    for(String options : new String[]{"", "-d", "-O"}) {
+      CronoType value = run(options, "(+ 1)");
+      assertTrue(options, value instanceof PartialApplication);
+      assertSame(CronoFunction.ADD.function,
+                 ((PartialApplication)value).target);
+      assertEquals(1, ((PartialApplication)value).bound.length);
+    }
+  }
+
+  public void testPrint() throws Exception {
+    /* Curried builtins print as the lambdas they used to be */
+    check("(\\ (_i?0!_) (+ 1 _i?0!_))", "(+ 1)");
+  }
+
+  public void testApply() throws Exception {
+    check("3", "((+ 1) 2)");
+    check("(2 . 3)", "(define inc (+ 1)) (cons (inc 1) (inc 2))");
+    check("Nil", "((< 3) 2)");
+    check("(1 1)", "(define c (cons 1)) (c (c Nil))");
+    check(":function", "(typeof (+ 1))");
+  }
+
+  public void testErrors() throws Exception {
+    checkError("((+ 1) 2 3)");
+    checkError("((+ 1) (cons 1 2))");
+    checkError("((+ 'a') 1)");
+  }
+}
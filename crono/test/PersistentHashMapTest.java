@@ -0,0 +1,113 @@
+import java.util.HashMap;
+import java.util.Map;
+
+import crono.PersistentHashMap;
+
+public class PersistentHashMapTest extends junit.framework.TestCase {
+  /* A key whose hash code is chosen by the test, to force collisions */
+  private static class Key {
+    final int id, hash;
+
+    Key(int id, int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+
+    public boolean equals(Object o) {
+      return (o instanceof Key) && ((Key)o).id == id;
+    }
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  public void testEmpty() throws Exception {
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    assertEquals(0, map.size());
+    assertNull(map.get("a"));
+    assertFalse(map.containsKey("a"));
+    assertSame(map, map.remove("a"));
+    assertFalse(map.iterator().hasNext());
+  }
+
+  public void testPutGet() throws Exception {
+    PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+    for(int i = 0; i < 5000; ++i) {
+      map = map.put(i, i * 2);
+    }
+    assertEquals(5000, map.size());
+    for(int i = 0; i < 5000; ++i) {
+      assertEquals(Integer.valueOf(i * 2), map.get(i));
+    }
+    assertNull(map.get(5000));
+  }
+
+  public void testReplace() throws Exception {
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    map = map.put("a", 1).put("a", 2);
+    assertEquals(1, map.size());
+    assertEquals(Integer.valueOf(2), map.get("a"));
+  }
+
+  public void testUpdatesLeaveOldMaps() throws Exception {
+    PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+    PersistentHashMap<String, Integer> one = empty.put("a", 1);
+    PersistentHashMap<String, Integer> two = one.put("b", 2);
+    PersistentHashMap<String, Integer> other = one.put("a", 3);
+    PersistentHashMap<String, Integer> none = two.remove("a");
+
+    assertEquals(0, empty.size());
+    assertEquals(1, one.size());
+    assertEquals(Integer.valueOf(1), one.get("a"));
+    assertNull(one.get("b"));
+    assertEquals(Integer.valueOf(1), two.get("a"));
+    assertEquals(Integer.valueOf(3), other.get("a"));
+    assertEquals(1, none.size());
+    assertNull(none.get("a"));
+    assertEquals(Integer.valueOf(2), none.get("b"));
+  }
+
+  public void testCollisions() throws Exception {
+    PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+    for(int i = 0; i < 100; ++i) {
+      map = map.put(new Key(i, i % 3), i);
+    }
+    assertEquals(100, map.size());
+    for(int i = 0; i < 100; ++i) {
+      assertEquals(Integer.valueOf(i), map.get(new Key(i, i % 3)));
+    }
+    for(int i = 0; i < 100; i += 2) {
+      map = map.remove(new Key(i, i % 3));
+    }
+    assertEquals(50, map.size());
+    for(int i = 0; i < 100; ++i) {
+      assertEquals(i % 2 == 0, !map.containsKey(new Key(i, i % 3)));
+    }
+  }
+
+  public void testRemoveAll() throws Exception {
+    PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+    for(int i = 0; i < 1000; ++i) {
+      map = map.put(i, i);
+    }
+    for(int i = 0; i < 1000; ++i) {
+      map = map.remove(i);
+      assertEquals(999 - i, map.size());
+    }
+    assertFalse(map.iterator().hasNext());
+  }
+
+  public void testIterator() throws Exception {
+    PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+    Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+    for(int i = 0; i < 3000; i += 3) {
+      map = map.put(i, -i);
+      expected.put(i, -i);
+    }
+    Map<Integer, Integer> actual = new HashMap<Integer, Integer>();
+    for(Map.Entry<Integer, Integer> e : map) {
+      assertNull(actual.put(e.getKey(), e.getValue()));
+    }
+    assertEquals(expected, actual);
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * A failed try body must leave no trace: its definitions are undone, and
+ * the frames of the calls it was in are left.
+ */
+public class SnapshotTest extends CronoTestCase {
+  public void testRollback() throws Exception {
+    check("1", "(define a 1) (try e (+ (define a 2) (raise 1)) a)");
+    check("(5 . 5)",
+          "(define a 1) (define b (try e (define a 5) 0)) (cons a b)");
+  }
+
+  public void testNested() throws Exception {
+    String program = "(define a 1)" +
+      "(try e (try f (+ (define a 2) (raise 1)) (+ (define a 3) (raise 2)))" +
+      " (cons e a))";
+    check("(2 . 1)", program);
+  }
+
+  public void testLocal() throws Exception {
+    check("1", "(defun f (x) (try e (+ (define x 2) (raise 1)) x)) (f 1)");
+  }
+
+  public void testFramesLeft() throws Exception {
+    String program =
+      "(define x 1) (defun g (x) (raise x)) (cons (try e (g 10) e) x)";
+    check("(10 . 1)", program);
+    program = "(define x 1) (defun show (u) x)" +
+      "(defun g (x) (+ (show 0) (raise x)))" +
+      "(cons (try e (g 10) e) (show 0))";
+    check(LEXICAL, "(10 . 1)", program);
+    check(DYNAMIC, "(10 . 1)", program);
+  }
+
+  public void testRecursive() throws Exception {
+    String program = "(define a 1)" +
+      "(defun f (n) (if (= n 0) (raise a) (try e (f (- n 1)) (+ e 1))))" +
+      "(f 50)";
+    check("2", program);
+  }
+
+  public void testMany() throws Exception {
+    String program = "(define a 0)" +
+      "(defun f (i) (try e (+ (define a i) (raise i)) (+ e a)))" +
+      "(defun loop (i acc) (if (= i 0) acc (loop (- i 1) (+ acc (f i)))))" +
+      "(cons (loop 5000 0) a)";
+    check("(12502500 . 0)", program);
+  }
+}
@@ -0,0 +1,37 @@
+/**
+ * Arithmetic that has only seen integers must still give the generic
+ * result when something else arrives.
+ */
+public class SpeculationTest extends CronoTestCase {
+  /* Calls f with 2000 down to 1, so that its arithmetic only sees
+   * integers, and is promoted under -c */
+  private static final String WARM =
+    "(defun warm (i) (if (= i 0) 0 (warm (- (+ i (* 0 (f i))) 1))))" +
+    "(warm 2000)";
+
+  public void testFloat() throws Exception {
+    String program = "(defun f (x) (+ (* x 2) (+ x 1)))" + WARM;
+    check("(10 . 5.5)", program + "(cons (f 3) (f 1.5))");
+  }
+
+  public void testComparison() throws Exception {
+    String program = "(defun f (x) (if (< x 3) x (- 0 x)))" + WARM;
+    check("(2.5 . -3.5)", program + "(cons (f 2.5) (f 3.5))");
+  }
+
+  public void testNotANumber() throws Exception {
+    String program = "(defun f (x) (+ x 1))" + WARM;
+    check("0", program + "(try e (f (cons 1 2)) 0)");
+    checkError(program + "(f (cons 1 2))");
+  }
+
+  public void testOverflow() throws Exception {
+    String program = "(defun f (x) (+ x 1))" + WARM;
+    check("-9223372036854775808", program + "(f 9223372036854775807)");
+  }
+
+  public void testRedefinedBuiltin() throws Exception {
+    String program = "(defun f (x) (+ x 1))" + WARM;
+    check("5", program + "(define + *) (f 5)");
+  }
+}
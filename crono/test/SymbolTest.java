@@ -0,0 +1,30 @@
+import java.util.HashSet;
+import java.util.Set;
+
+import crono.type.Symbol;
+
+public class SymbolTest extends CronoTestCase {
+  public void testIntern() throws Exception {
+    Symbol sym = Symbol.intern("symbol-test");
+    assertSame(sym, Symbol.intern("symbol-test"));
+    assertSame(sym, Symbol.intern(new String("symbol-test")));
+    assertEquals(sym.id, Symbol.intern("symbol-test").id);
+    assertEquals("symbol-test", sym.toString());
+  }
+
+  public void testIds() throws Exception {
+    Set<Integer> ids = new HashSet<Integer>();
+    for(int i = 0; i < 100; ++i) {
+      Symbol sym = Symbol.intern("symbol-test-" + i);
+      assertTrue(ids.add(sym.id));
+      assertEquals(sym.id, sym.hashCode());
+    }
+    assertFalse(Symbol.intern("a").equals(Symbol.intern("b")));
+  }
+
+  public void testProgramSymbols() throws Exception {
+    /* Names read by the parser are the names the builtins are bound to */
+    check("3", "(defun symbol-test (x) (+ x 1)) (symbol-test 2)");
+    check("2", "(let ((x 1)) (let ((x 2)) x))");
+  }
+}
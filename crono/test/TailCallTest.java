@@ -0,0 +1,50 @@
+/**
+ * Calls in tail position must not grow the Java stack, however they are
+ * reached.
+ */
+public class TailCallTest extends CronoTestCase {
+  private static final int DEPTH = 300000;
+
+  public void testSelfCall() throws Exception {
+    String program =
+      "(defun loop (i) (if (= i 0) 0 (loop (- i 1))))" +
+      "(loop " + DEPTH + ")";
+    check("0", program);
+  }
+
+  public void testThroughLet() throws Exception {
+    String program =
+      "(defun loop (i) (if (= i 0) 0 (let ((j (- i 1))) (loop j))))" +
+      "(loop " + DEPTH + ")";
+    check("0", program);
+  }
+
+  public void testThroughTry() throws Exception {
+    String program =
+      "(defun loop (i) (if (= i 0) 0 (loop (- i 1))))" +
+      "(try e (loop " + DEPTH + ") e)";
+    check("0", program);
+  }
+
+  public void testThroughArgument() throws Exception {
+    String program =
+      "(defun f (g i) (if (= i 0) 0 (g g (- i 1))))" +
+      "(f f " + DEPTH + ")";
+    check("0", program);
+  }
+
+  public void testThroughWrapper() throws Exception {
+    String program =
+      "(define loop (\\ (i) (if (= i 0) 0 (loop (- i 1)))))" +
+      "(define w (\\ (i) (loop i)))" +
+      "(w " + DEPTH + ")";
+    check("0", program);
+  }
+
+  public void testNonTailResult() throws Exception {
+    String program =
+      "(defun count (i) (if (= i 0) 0 (+ 1 (count (- i 1)))))" +
+      "(count 100)";
+    check("100", program);
+  }
+}
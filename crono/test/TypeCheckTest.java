@@ -0,0 +1,67 @@
+import crono.type.Atom;
+import crono.type.Cons;
+import crono.type.CronoArray;
+import crono.type.CronoCharacter;
+import crono.type.CronoFloat;
+import crono.type.CronoInteger;
+import crono.type.CronoNumber;
+import crono.type.CronoPrimitive;
+import crono.type.CronoString;
+import crono.type.CronoStruct;
+import crono.type.CronoType;
+import crono.type.CronoTypeId;
+import crono.type.CronoVector;
+import crono.type.Function;
+import crono.type.Nil;
+import crono.type.Symbol;
+import crono.type.TruthValue;
+import crono.type.TypeId;
+
+/**
+ * The precomputed subtype test must match walking the parent chain.
+ */
+public class TypeCheckTest extends CronoTestCase {
+  private static final TypeId[] TYPES = {
+    CronoType.TYPEID, Atom.TYPEID, Cons.TYPEID, CronoArray.TYPEID,
+    CronoCharacter.TYPEID, CronoFloat.TYPEID, CronoInteger.TYPEID,
+    CronoNumber.TYPEID, CronoPrimitive.TYPEID, CronoString.TYPEID,
+    CronoStruct.TYPEID, CronoTypeId.TYPEID, CronoVector.TYPEID,
+    Function.TYPEID, Nil.TYPEID, Symbol.TYPEID, TruthValue.TYPEID,
+  };
+  private static final CronoType[] VALUES = {
+    new CronoInteger(1), new CronoFloat(1.5), new CronoCharacter('a'),
+    Nil.NIL, TruthValue.T, Symbol.intern("a"),
+    new Cons(new CronoInteger(1), Nil.NIL),
+  };
+
+  /* The test as it was before ancestors were precomputed */
+  private static boolean walk(TypeId type, CronoType object) {
+    for(TypeId id = object.typeId(); id != null; id = id.parent) {
+      if(type.equals(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void testIsType() throws Exception {
+    for(TypeId type : TYPES) {
+      for(CronoType value : VALUES) {
+        assertEquals(type + " " + value.typeId(), walk(type, value),
+                     type.isType(value));
+      }
+    }
+  }
+
+  public void testSubtypes() throws Exception {
+    assertTrue(CronoNumber.TYPEID.isType(new CronoInteger(1)));
+    assertTrue(CronoPrimitive.TYPEID.isType(new CronoFloat(1.5)));
+    assertTrue(CronoType.TYPEID.isType(Nil.NIL));
+  }
+
+  public void testCallSite() throws Exception {
+    check("Nil", "(defun f (x) (< x 2)) (f 3)");
+    checkError("(< (cons 1 2) 1)");
+    checkError("(defun f (x) (< x 2)) (f 3) (f (cons 1 2))");
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Programs whose forms the bytecode VM compiles to instructions must give
+ * the results of the reference interpreter.
+ */
+public class VirtualMachineTest extends CronoTestCase {
+  private static final String[] VM = {"", "-b", "-bd", "-Ob"};
+
+  public void testWhile() throws Exception {
+    String program = "(define n 0) (while (< n 5) (define n (+ n 1)))";
+    check(VM, "5", program);
+    check(VM, "5", program + " n");
+  }
+
+  public void testShadowedSpecialForm() throws Exception {
+    /* An argument named if is not the special form */
+    check(VM, "3", "(defun f (if) (if 1 2)) (f +)");
+  }
+
+  public void testFunctionValue() throws Exception {
+    check(VM, "8", "(defun g (x) (* x 2)) (define h g) (h 4)");
+  }
+
+  public void testLet() throws Exception {
+    check(VM, "6", "(let ((x 1) (y 2)) (define z 3) (+ x (+ y z)))");
+  }
+
+  public void testInterpretedBuiltin() throws Exception {
+    check(VM, "3", "(eval \"(+ 1 2)\")");
+  }
+
+  public void testPartialSpecialForm() throws Exception {
+    check(VM, "(\\ (_i?0!_) (if 1 2 _i?0!_))", "(if 1 2)");
+  }
+
+  public void testTooManyArguments() throws Exception {
+    checkError("(define f (\\ (x) x)) (f 1 2)");
+  }
+}